@@ -0,0 +1,64 @@
+package vn.hoidanit.laptopshop.config;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.Role;
+
+/**
+ * Second-level cache của Hibernate chạy trong JVM (JCache + Caffeine), không
+ * cần server cache bên ngoài. Product có giới hạn số lượng + thời gian sống,
+ * Role luôn nằm trong cache.
+ */
+@Configuration
+public class CacheConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${cache.product.max-size:10000}") long productMaxSize,
+            @Value("${cache.product.ttl:30m}") Duration productTtl,
+            @Value("${cache.query.max-size:2000}") long queryMaxSize) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+
+        cacheManager.createCache(Product.class.getName(), config(productMaxSize, productTtl));
+        // role rất ít và gần như không đổi: không giới hạn, không hết hạn
+        cacheManager.createCache(Role.class.getName(), config(-1, null));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                config(queryMaxSize, productTtl));
+        // timestamps không được evict, nếu không query cache có thể trả kết quả cũ
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, config(-1, null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> config(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+        config.setStatisticsEnabled(true);
+        if (maxSize > 0) {
+            config.setMaximumSize(OptionalLong.of(maxSize));
+        }
+        if (ttl != null) {
+            config.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        return config;
+    }
+}
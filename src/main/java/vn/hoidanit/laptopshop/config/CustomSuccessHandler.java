@@ -17,8 +17,9 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import vn.hoidanit.laptopshop.domain.User;
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
 import vn.hoidanit.laptopshop.service.UserService;
+import vn.hoidanit.laptopshop.service.session.SessionPrincipal;
 
 public class CustomSuccessHandler implements AuthenticationSuccessHandler {
 
@@ -51,17 +52,12 @@ public class CustomSuccessHandler implements AuthenticationSuccessHandler {
         // get email
         String email = authentication.getName();
 
-        // querry user
-        User user = this.userService.getUserByEmail(email);
+        // đã nạp ở CustomUserDetailsService trong cùng request, không query lại
+        LoginUserDTO user = this.userService.getAuthenticatedLoginUser(email);
         if (user != null) {
-            session.setAttribute("user", user);
-
-            session.setAttribute("fullName", user.getFullName());
-            session.setAttribute("avatar", user.getAvatar());
-            session.setAttribute("id", user.getId());
-            session.setAttribute("email", user.getEmail());
-            int sum = user.getCart() == null ? 0 : user.getCart().getSum();
-            session.setAttribute("sum", sum);
+            session.setAttribute(SessionPrincipal.ATTRIBUTE, new SessionPrincipal(user.getId(), user.getEmail(),
+                    user.getFullName(), user.getAvatar()));
+            session.setAttribute("sum", user.getCartSum());
         }
     }
 
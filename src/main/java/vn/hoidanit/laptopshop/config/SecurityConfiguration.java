@@ -1,5 +1,8 @@
 package vn.hoidanit.laptopshop.config;
 
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -8,8 +11,8 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -18,28 +21,38 @@ import org.springframework.session.security.web.authentication.SpringSessionReme
 import jakarta.servlet.DispatcherType;
 import vn.hoidanit.laptopshop.service.CustomUserDetailsService;
 import vn.hoidanit.laptopshop.service.UserService;
+import vn.hoidanit.laptopshop.service.auth.PasswordHashingPool;
+import vn.hoidanit.laptopshop.service.auth.PooledPasswordEncoder;
+import vn.hoidanit.laptopshop.service.session.ClusterSessionRegistry;
 
 @Configuration
 @EnableMethodSecurity(securedEnabled = true)
 public class SecurityConfiguration {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordHashingPool passwordHashingPool,
+            @Value("${password.bcrypt.strength:10}") int strength) {
+        // hash cũ không có prefix {bcrypt} vẫn match được, và được băm lại
+        // theo cost hiện tại ở lần đăng nhập thành công tiếp theo
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new PooledPasswordEncoder(delegating, passwordHashingPool);
     }
 
     @Bean
-    public UserDetailsService userDetailsService(UserService userService) {
+    public CustomUserDetailsService userDetailsService(UserService userService) {
         return new CustomUserDetailsService(userService);
     }
 
     @Bean
     public DaoAuthenticationProvider authProvider(
             PasswordEncoder passwordEncoder,
-            UserDetailsService userDetailsService) {
+            CustomUserDetailsService userDetailsService) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         // authProvider.setHideUserNotFoundExceptions(false);
         return authProvider;
     }
@@ -58,7 +71,7 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, ClusterSessionRegistry sessionRegistry) throws Exception {
         // v6 .lamda
         http
                 .authorizeHttpRequests(authorize -> authorize
@@ -70,6 +83,8 @@ public class SecurityConfiguration {
                                 "/images/**")
                         .permitAll()
 
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/admin/**").hasRole("ADMIN")
 
                         .anyRequest().authenticated())
@@ -78,7 +93,8 @@ public class SecurityConfiguration {
                         .sessionCreationPolicy(SessionCreationPolicy.ALWAYS)
                         .invalidSessionUrl("/logout?expired")
                         .maximumSessions(1)// chỉ 1 người dùng đăng nhập
-                        .maxSessionsPreventsLogin(false))// người t2 đăng nhập sẽ đẩy người trước ra
+                        .maxSessionsPreventsLogin(false)// người t2 đăng nhập sẽ đẩy người trước ra
+                        .sessionRegistry(sessionRegistry))// dùng chung giữa các node qua bảng session
 
                 .logout(logout -> logout.deleteCookies("JSESSIONID").invalidateHttpSession(true))
 
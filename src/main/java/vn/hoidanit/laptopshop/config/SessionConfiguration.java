@@ -0,0 +1,78 @@
+package vn.hoidanit.laptopshop.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.hoidanit.laptopshop.service.session.ClusterSessionRegistry;
+import vn.hoidanit.laptopshop.service.session.CompactSessionSerializer;
+import vn.hoidanit.laptopshop.service.session.TieredSessionRepository;
+
+/**
+ * Bọc JdbcIndexedSessionRepository do Spring Boot tạo bằng
+ * TieredSessionRepository. Dùng BeanPostProcessor thay vì khai báo thêm một
+ * SessionRepository, vì khi đó auto-config JDBC session của Boot sẽ tắt (mất
+ * khởi tạo schema, timeout...).
+ */
+@Configuration
+public class SessionConfiguration {
+
+    // tên bean cố định: JdbcHttpSessionConfiguration dùng bean này để chuyển thuộc tính <-> byte[]
+    @Bean("springSessionConversionService")
+    public ConversionService springSessionConversionService(MeterRegistry meterRegistry, Environment env) {
+        CompactSessionSerializer serializer = new CompactSessionSerializer(
+                SessionConfiguration.class.getClassLoader(),
+                env.getProperty("session.attribute.max-bytes", Integer.class, 4096),
+                meterRegistry);
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, serializer::serialize);
+        conversionService.addConverter(byte[].class, Object.class, serializer::deserialize);
+        return conversionService;
+    }
+
+    // maximumSessions(1) dùng registry này để áp dụng trên mọi node
+    @Bean
+    public ClusterSessionRegistry sessionRegistry(
+            @Qualifier("sessionRepository") FindByIndexNameSessionRepository<? extends Session> sessionRepository,
+            Environment env) {
+        return new ClusterSessionRegistry(sessionRepository,
+                env.getProperty("spring.session.timeout", Duration.class, Duration.ofMinutes(30)));
+    }
+
+    @Bean
+    public static BeanPostProcessor tieredSessionRepositoryPostProcessor(
+            ObjectProvider<JdbcTemplate> jdbcTemplate,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (!(bean instanceof JdbcIndexedSessionRepository jdbc)
+                        || !env.getProperty("session.near-cache.enabled", Boolean.class, true)) {
+                    return bean;
+                }
+                return new TieredSessionRepository(jdbc,
+                        jdbcTemplate.getObject(),
+                        env.getProperty("spring.session.jdbc.table-name", "SPRING_SESSION"),
+                        env.getProperty("session.near-cache.revalidate-after", Duration.class, Duration.ofSeconds(5)),
+                        env.getProperty("session.write-behind.interval", Duration.class, Duration.ofSeconds(1)),
+                        env.getProperty("session.near-cache.idle-eviction", Duration.class, Duration.ofMinutes(5)),
+                        env.getProperty("session.write-behind.batch-size", Integer.class, 200),
+                        meterRegistry.getObject());
+            }
+        };
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -18,8 +19,11 @@ import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
 import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
 import vn.hoidanit.laptopshop.service.ProductService;
 import vn.hoidanit.laptopshop.service.UploadService;
+import vn.hoidanit.laptopshop.service.catalog.CatalogSort;
+import vn.hoidanit.laptopshop.service.pagination.ProductCursor;
 
 @Controller
 public class ProductController {
@@ -35,7 +39,18 @@ public class ProductController {
     }
 
     @GetMapping("/admin/product")
-    public String getProduct(Model model, @RequestParam("page") Optional<String> pageOptional) {
+    public String getProduct(Model model, @RequestParam("page") Optional<String> pageOptional,
+            @RequestParam("cursor") Optional<String> cursorOptional) {
+        if (cursorOptional.isPresent()) {
+            Window<ProductListDTO> window = this.productService.fetchProductsWithCursor(cursorOptional.get(), 5);
+            String nextCursor = window.hasNext() && !window.isEmpty()
+                    ? ProductCursor.encode(window.positionAt(window.size() - 1), CatalogSort.NONE.toKeysetSort())
+                    : "";
+            model.addAttribute("products", window.getContent());
+            model.addAttribute("cursorMode", true);
+            model.addAttribute("nextCursor", nextCursor);
+            return "admin/product/show";
+        }
         int page = 1;
         try {
             if (pageOptional.isPresent()) { // có truyền lên tham số page hay không
@@ -49,8 +64,8 @@ public class ProductController {
             // TODO: handle exception
         }
         Pageable pageable = PageRequest.of(page - 1, 5);
-        Page<Product> prs = this.productService.fetchProducts(pageable);
-        List<Product> listProducts = prs.getContent();
+        Page<ProductListDTO> prs = this.productService.fetchProducts(pageable);
+        List<ProductListDTO> listProducts = prs.getContent();
         model.addAttribute("products", listProducts);
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", prs.getTotalPages());
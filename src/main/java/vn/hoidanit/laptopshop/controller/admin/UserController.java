@@ -3,6 +3,7 @@ package vn.hoidanit.laptopshop.controller.admin;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -126,7 +127,12 @@ public class UserController {
         trandat.setAvatar(avatar);
         trandat.setPassword(hashPassword);
         trandat.setRole(this.userService.getRoleByName(trandat.getRole().getName()));
-        this.userService.handleSaveUser(trandat);
+        try {
+            this.userService.handleSaveUser(trandat);
+        } catch (DataIntegrityViolationException e) {
+            newUserBindingResult.rejectValue("email", "duplicate", "Email da ton tai");
+            return "admin/user/create";
+        }
         return "redirect:/admin/user"; // quay luon lai trang
     }
 
@@ -138,13 +144,18 @@ public class UserController {
             currentUser.setFullName(trandat.getFullName());
             currentUser.setPhone(trandat.getPhone());
             this.userService.handleSaveUser(currentUser);
+            this.userService.evictLoginUser(currentUser.getEmail());
         }
         return "redirect:/admin/user";
     }
 
     @PostMapping("/admin/user/delete")
     public String postDeleteUser(Model model, @ModelAttribute("newUser") User trandat) {
+        User currentUser = this.userService.getUserById(trandat.getId());
         this.userService.deleteAUser(trandat.getId());
+        if (currentUser != null) {
+            this.userService.evictLoginUser(currentUser.getEmail());
+        }
         return "redirect:/admin/user";
     }
 
@@ -1,7 +1,9 @@
 package vn.hoidanit.laptopshop.controller.client;
 
+import java.io.IOException;
 import java.util.List;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -14,7 +16,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 
+import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import vn.hoidanit.laptopshop.domain.Order;
@@ -24,6 +28,8 @@ import vn.hoidanit.laptopshop.domain.dto.RegisterDTO;
 import vn.hoidanit.laptopshop.service.OrderService;
 import vn.hoidanit.laptopshop.service.ProductService;
 import vn.hoidanit.laptopshop.service.UserService;
+import vn.hoidanit.laptopshop.service.fragment.HomePageFragmentCache;
+import vn.hoidanit.laptopshop.service.session.SessionPrincipalResolver;
 import org.springframework.web.bind.annotation.RequestParam;
 
 @Controller
@@ -33,24 +39,29 @@ public class HomePageController {
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final OrderService orderService;
+    private final HomePageFragmentCache homePageFragmentCache;
+    private final SessionPrincipalResolver sessionPrincipalResolver;
 
     public HomePageController(
             ProductService productService,
             UserService userService,
-            PasswordEncoder passwordEncoder, OrderService orderService) {
+            PasswordEncoder passwordEncoder, OrderService orderService,
+            HomePageFragmentCache homePageFragmentCache,
+            SessionPrincipalResolver sessionPrincipalResolver) {
         this.productService = productService;
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
         this.orderService = orderService;
+        this.homePageFragmentCache = homePageFragmentCache;
+        this.sessionPrincipalResolver = sessionPrincipalResolver;
     }
 
     @GetMapping("/")
-    public String getHomePage(Model model) {
+    public String getHomePage(Model model, HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
         // List<Product> products = this.productService.fetchProducts();
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Product> prs = this.productService.fetchProducts(pageable);
-        List<Product> products = prs.getContent();
-        model.addAttribute("products", products);
+        // khối sản phẩm chỉ render lại khi catalog thay đổi
+        model.addAttribute("productStrip", this.homePageFragmentCache.render(request, response));
         return "client/homepage/show";
     }
 
@@ -76,7 +87,13 @@ public class HomePageController {
         user.setPassword(hashPassword);
         user.setRole(this.userService.getRoleByName("USER"));
         // save
-        this.userService.handleSaveUser(user);
+        try {
+            this.userService.handleSaveUser(user);
+        } catch (DataIntegrityViolationException e) {
+            // bloom filter bỏ lỡ email đăng ký ở node khác: unique key chặn lại
+            bindingResult.rejectValue("email", "duplicate", "Email da ton tai");
+            return "client/auth/register";
+        }
         return "redirect:/login";
 
     }
@@ -97,11 +114,12 @@ public class HomePageController {
     public String getOrderHistoryPage(Model model, HttpServletRequest request) {
         User curruntUser = new User();
         HttpSession session = request.getSession(false);
-        long id = (long) session.getAttribute("id");
+        long id = this.sessionPrincipalResolver.require(session).getId();
         curruntUser.setId(id);
 
         List<Order> orders = this.orderService.fetchOrderByUser(curruntUser);
         model.addAttribute("orders", orders);
+        model.addAttribute("intakes", this.orderService.fetchOpenIntakesByUser(curruntUser));
         return "client/cart/order-history";
     }
 
@@ -3,13 +3,16 @@ package vn.hoidanit.laptopshop.controller.client;
 import java.net.http.HttpRequest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,46 +25,92 @@ import vn.hoidanit.laptopshop.domain.Product;
 import vn.hoidanit.laptopshop.domain.Product_;
 import vn.hoidanit.laptopshop.domain.User;
 import vn.hoidanit.laptopshop.domain.dto.ProductCriteriaDTO;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
 import vn.hoidanit.laptopshop.service.ProductService;
+import vn.hoidanit.laptopshop.service.catalog.CatalogSort;
+import vn.hoidanit.laptopshop.service.catalog.FacetCounts;
+import vn.hoidanit.laptopshop.service.catalog.FacetedPage;
+import vn.hoidanit.laptopshop.service.idempotency.IdempotencyService;
+import vn.hoidanit.laptopshop.service.pagination.ProductCursor;
+import vn.hoidanit.laptopshop.service.search.ProductSuggester;
+import vn.hoidanit.laptopshop.service.session.SessionPrincipal;
+import vn.hoidanit.laptopshop.service.session.SessionPrincipalResolver;
+import vn.hoidanit.laptopshop.service.search.Suggestion;
+import vn.hoidanit.laptopshop.service.stock.InsufficientStockException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @Controller
 public class ItemController {
     private final ProductService productService;
+    private final IdempotencyService idempotencyService;
+    private final SessionPrincipalResolver sessionPrincipalResolver;
 
-    public ItemController(ProductService productService) {
+    public ItemController(ProductService productService, IdempotencyService idempotencyService,
+            SessionPrincipalResolver sessionPrincipalResolver) {
         this.productService = productService;
+        this.idempotencyService = idempotencyService;
+        this.sessionPrincipalResolver = sessionPrincipalResolver;
     }
 
     @GetMapping("/product/{id}")
-    public String getProductPage(Model model, @PathVariable long id) {
+    public String getProductPage(Model model, @PathVariable long id, ServletWebRequest webRequest) {
+        // trả 304 trước khi load sản phẩm hay render JSP
+        long lastModified = this.productService.getProductLastModified(id);
+        if (lastModified > 0) {
+            // trang có header giỏ hàng + CSRF theo session -> chỉ cho trình duyệt cache
+            webRequest.getResponse().setHeader("Cache-Control", "private, no-cache");
+            if (webRequest.checkNotModified(this.productETag(id, lastModified, webRequest.getRequest()),
+                    lastModified)) {
+                return null;
+            }
+        }
+
         Product pr = this.productService.fetchProductById(id).get();
         model.addAttribute("product", pr);
         model.addAttribute("id", id);
         return "client/product/detail";
     }
 
+    // ETag mạnh: version sản phẩm + dấu vân tay session (id session, số lượng giỏ hàng)
+    private String productETag(long id, long lastModified, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        int sessionPart = 0;
+        if (session != null) {
+            SessionPrincipal principal = SessionPrincipal.of(session);
+            sessionPart = (session.getId() + ":" + session.getAttribute("sum") + ":"
+                    + (principal == null ? null : principal.getFullName())).hashCode();
+        }
+        return "\"" + id + "-" + lastModified + "-" + Integer.toHexString(sessionPart) + "\"";
+    }
+
     @PostMapping("/add-product-to-cart/{id}")
-    public String addProductToCart(@PathVariable long id, HttpServletRequest request) {
+    public String addProductToCart(@PathVariable long id,
+            @RequestParam(name = IdempotencyService.PARAMETER, required = false) String idempotencyKey,
+            HttpServletRequest request) {
         HttpSession session = request.getSession(false);
 
         long productId = id;
-        String email = (String) session.getAttribute("email");
+        long userId = this.sessionPrincipalResolver.require(session).getId();
 
-        this.productService.handleAddProductToCart(email, productId, session, 1);
-        return "redirect:/";
+        // gửi lại cùng token (bấm hai lần) thì không thêm lần nữa
+        return this.idempotencyService.execute("cart:" + productId, userId, idempotencyKey, "redirect:/", () -> {
+            this.productService.handleAddProductToCart(userId, productId, session, 1);
+            return "redirect:/";
+        });
     }
 
     @GetMapping("/cart")
     public String getCartPage(Model model, HttpServletRequest request) {
         User currentUser = new User();
         HttpSession session = request.getSession(false);
-        long id = (long) session.getAttribute("id");// Lấy id từ session ra rồi gán vào người dùng
+        long id = this.sessionPrincipalResolver.require(session).getId();// Lấy id từ session ra rồi gán vào người dùng
         currentUser.setId(id);
 
         Cart cart = this.productService.fetchByUser(currentUser);
@@ -83,6 +132,9 @@ public class ItemController {
 
     @GetMapping("/products")
     public String getProductPage(Model model, ProductCriteriaDTO productCriteriaDTO, HttpServletRequest request) {
+        if (productCriteriaDTO.getCursor() != null && productCriteriaDTO.getCursor().isPresent()) {
+            return this.getProductPageByCursor(model, productCriteriaDTO, request);
+        }
         int page = 1;
         try {
             if (productCriteriaDTO.getPage().isPresent()) { // có truyền lên tham số page hay không
@@ -109,9 +161,18 @@ public class ItemController {
         }
 
         // String name = nameOptional.isPresent() ? nameOptional.get() : "";
-        Page<Product> prs = this.productService.fetchProductsWithSpec(pageable, productCriteriaDTO);
+        FacetedPage<ProductListDTO> result;
+        if (productCriteriaDTO.getQ() != null && productCriteriaDTO.getQ().isPresent()
+                && !productCriteriaDTO.getQ().get().isBlank()) {
+            result = new FacetedPage<>(this.productService.searchProducts(pageable, productCriteriaDTO),
+                    FacetCounts.EMPTY);
+        } else {
+            result = this.productService.fetchProductsWithFacets(pageable, productCriteriaDTO);
+        }
+        Page<ProductListDTO> prs = result.getPage();
 
-        List<Product> listProducts = prs.getContent().size() > 0 ? prs.getContent() : new ArrayList<Product>();
+        List<ProductListDTO> listProducts = prs.getContent().size() > 0 ? prs.getContent()
+                : new ArrayList<ProductListDTO>();
 
         String qs = request.getQueryString();
         if (qs != null && !qs.isBlank()) {
@@ -120,15 +181,63 @@ public class ItemController {
         }
 
         model.addAttribute("products", listProducts);
+        model.addAttribute("idempotencyKeys", this.issueIdempotencyKeys(listProducts));
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", prs.getTotalPages());
         model.addAttribute("queryString", qs);
+        model.addAttribute("facets", result.getFacets());
+        return "client/product/show";
+    }
+
+    // mỗi form "Add to cart" nhận một token riêng khi render, theo id sản phẩm
+    private Map<Long, String> issueIdempotencyKeys(List<ProductListDTO> products) {
+        Map<Long, String> keys = new HashMap<>();
+        for (ProductListDTO product : products) {
+            keys.put(product.getId(), this.idempotencyService.issue());
+        }
+        return keys;
+    }
+
+    // ?cursor=first để vào chế độ cursor, các trang sau dùng token trả về
+    private String getProductPageByCursor(Model model, ProductCriteriaDTO productCriteriaDTO,
+            HttpServletRequest request) {
+        Window<ProductListDTO> window = this.productService.fetchProductsWithCursor(productCriteriaDTO, 10);
+
+        String qs = request.getQueryString();
+        if (qs != null && !qs.isBlank()) {
+            // remove cursor
+            qs = qs.replaceAll("(^|&)cursor=[^&]*", "");
+            if (!qs.isEmpty() && !qs.startsWith("&")) {
+                qs = "&" + qs;
+            }
+        }
+
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? ProductCursor.encode(window.positionAt(window.size() - 1),
+                        CatalogSort.fromSlug(productCriteriaDTO.getSort()).toKeysetSort())
+                : "";
+
+        model.addAttribute("products", window.getContent());
+        model.addAttribute("idempotencyKeys", this.issueIdempotencyKeys(window.getContent()));
+        model.addAttribute("cursorMode", true);
+        model.addAttribute("nextCursor", nextCursor);
+        model.addAttribute("queryString", qs);
+        model.addAttribute("facets", this.productService.fetchFacetCounts(productCriteriaDTO));
         return "client/product/show";
     }
 
+    @GetMapping("/products/suggest")
+    @ResponseBody
+    public List<Suggestion> getSuggestions(@RequestParam("q") String q,
+            @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        return this.productService.suggestProducts(q, Math.min(limit, ProductSuggester.MAX_SUGGESTIONS));
+    }
+
     @PostMapping("/delete-cart-product/{id}")
     public String deleteCartDetail(@PathVariable long id, HttpServletRequest request) {
         HttpSession session = request.getSession(false);
+        // chuyển session cũ sang principal trước để ProductService flush đúng giỏ hàng
+        this.sessionPrincipalResolver.require(session);
         long cartDetailId = id;
         this.productService.handleRemoveCartDetail(cartDetailId, session);
         return "redirect:/cart";
@@ -138,7 +247,7 @@ public class ItemController {
     public String getCheckOutPage(Model model, HttpServletRequest request) {
         User currentUser = new User();// null
         HttpSession session = request.getSession(false);
-        long id = (long) session.getAttribute("id");
+        long id = this.sessionPrincipalResolver.require(session).getId();
         currentUser.setId(id);
 
         Cart cart = this.productService.fetchByUser(currentUser);
@@ -152,6 +261,7 @@ public class ItemController {
 
         model.addAttribute("cartDetails", cartDetails);
         model.addAttribute("totalPrice", totalPrice);
+        model.addAttribute("idempotencyKey", this.idempotencyService.issue());
 
         return "client/cart/check-out";
     }
@@ -166,14 +276,24 @@ public class ItemController {
     @PostMapping("/place-order")
     public String handlePlaceOrder(HttpServletRequest request, @RequestParam("receiverName") String receiverName,
             @RequestParam("receiverAddress") String receiverAddress,
-            @RequestParam("receiverPhone") String receiverPhone) {
+            @RequestParam("receiverPhone") String receiverPhone,
+            @RequestParam(name = IdempotencyService.PARAMETER, required = false) String idempotencyKey) {
         User currentUser = new User();// null
         HttpSession session = request.getSession(false);
-        long id = (long) session.getAttribute("id");
+        long id = this.sessionPrincipalResolver.require(session).getId();
         currentUser.setId(id);
 
-        this.productService.handlePlaceOrder(currentUser, session, receiverName, receiverAddress, receiverPhone);
-        return "redirect:/thanks";
+        // gửi lại cùng token trả về đúng kết quả lần đầu, không tạo thêm yêu cầu đặt hàng;
+        // lần đầu chưa xong (hoặc không rõ kết quả) thì đưa tới lịch sử đơn hàng thay vì báo thành công
+        return this.idempotencyService.execute("place-order", id, idempotencyKey, "redirect:/order-history", () -> {
+            try {
+                this.productService.handlePlaceOrder(currentUser, session, receiverName, receiverAddress,
+                        receiverPhone);
+            } catch (InsufficientStockException e) {
+                return "redirect:/cart?outOfStock=" + e.getProductId();
+            }
+            return "redirect:/thanks";
+        });
     }
 
     @GetMapping("/thanks")
@@ -188,8 +308,8 @@ public class ItemController {
             HttpServletRequest request) {
         HttpSession session = request.getSession(false);
 
-        String email = (String) session.getAttribute("email");
-        this.productService.handleAddProductToCart(email, id, session, quantity);
+        long userId = this.sessionPrincipalResolver.require(session).getId();
+        this.productService.handleAddProductToCart(userId, id, session, quantity);
         return "redirect:/product/" + id;
     }
 }
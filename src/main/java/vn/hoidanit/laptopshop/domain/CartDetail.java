@@ -9,9 +9,12 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 @Entity
-@Table(name = "cart_detail")
+// một dòng cho mỗi (giỏ hàng, sản phẩm): thêm lại cùng sản phẩm chỉ tăng quantity
+@Table(name = "cart_detail", uniqueConstraints = @UniqueConstraint(name = "uk_cart_detail_cart_product", columnNames = {
+        "cart_id", "product_id" }))
 public class CartDetail implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,38 @@
+package vn.hoidanit.laptopshop.domain;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// seq cuối cùng của cart journal đã ghi vào DB, cập nhật cùng transaction với lô flush
+@Entity
+@Table(name = "cart_journal_state")
+public class CartJournalState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "node_id", length = 64)
+    private String nodeId;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+}
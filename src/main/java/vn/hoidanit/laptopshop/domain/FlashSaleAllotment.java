@@ -0,0 +1,63 @@
+package vn.hoidanit.laptopshop.domain;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// phần tồn kho flash sale một node đã nhận khỏi products.quantity (chưa bán + đã bán chưa ghi sold)
+@Entity
+@Table(name = "flash_sale_allotments", uniqueConstraints = @UniqueConstraint(name = "uk_flash_sale_allotment_node_product", columnNames = {
+        "node_id", "product_id" }))
+public class FlashSaleAllotment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    @Column(name = "product_id", nullable = false)
+    private long productId;
+
+    private long claimed;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(long productId) {
+        this.productId = productId;
+    }
+
+    public long getClaimed() {
+        return claimed;
+    }
+
+    public void setClaimed(long claimed) {
+        this.claimed = claimed;
+    }
+}
@@ -3,6 +3,7 @@ package vn.hoidanit.laptopshop.domain;
 import java.io.Serializable;
 import java.util.List;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -28,6 +29,10 @@ public class Order implements Serializable {
     private String receiverPhone;
     private String status;
 
+    // yêu cầu đặt hàng đã tạo ra đơn này, unique để worker xử lý lại cũng không tạo trùng
+    @Column(name = "intake_id", unique = true)
+    private Long intakeId;
+
     // user id
     @ManyToOne
     @JoinColumn(name = "user_id")
@@ -105,4 +110,11 @@ public class Order implements Serializable {
         this.orderDetails = orderDetails;
     }
 
+    public Long getIntakeId() {
+        return intakeId;
+    }
+
+    public void setIntakeId(Long intakeId) {
+        this.intakeId = intakeId;
+    }
 }
@@ -2,26 +2,40 @@ package vn.hoidanit.laptopshop.domain;
 
 import java.io.Serializable;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "order_detail")
+@Table(name = "order_detail", indexes = @Index(name = "idx_order_detail_stock_pending", columnList = "stock_pending, stock_node, product_id"))
 public class OrderDetail implements Serializable {
     private static final long serialVersionUID = 1L;
+    public static final int ID_ALLOCATION_SIZE = 50;
 
+    // id cấp theo khối 50 (bảng order_detail_seq) thay vì IDENTITY để Hibernate gom INSERT theo lô
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_detail_seq")
+    @SequenceGenerator(name = "order_detail_seq", sequenceName = "order_detail_seq", allocationSize = OrderDetail.ID_ALLOCATION_SIZE)
     private long id;
 
     private long quantity;
     private double price;
 
+    // flash sale: tồn kho đã trừ trong bộ nhớ nhưng chưa ghi xuống bảng products
+    @Column(name = "stock_pending", nullable = false)
+    private boolean stockPending;
+
+    // node đã giữ tồn kho cho dòng này (flash sale), chỉ node đó ghi sold cho dòng
+    @Column(name = "stock_node", length = 64)
+    private String stockNode;
+
     @ManyToOne
     @JoinColumn(name = "order_id")
     private Order order;
@@ -70,4 +84,19 @@ public class OrderDetail implements Serializable {
         this.product = product;
     }
 
-}
\ No newline at end of file
+    public boolean isStockPending() {
+        return stockPending;
+    }
+
+    public void setStockPending(boolean stockPending) {
+        this.stockPending = stockPending;
+    }
+
+    public String getStockNode() {
+        return stockNode;
+    }
+
+    public void setStockNode(String stockNode) {
+        this.stockNode = stockNode;
+    }
+}
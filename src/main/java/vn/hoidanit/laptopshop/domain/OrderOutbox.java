@@ -0,0 +1,77 @@
+package vn.hoidanit.laptopshop.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// sự kiện sau khi tạo đơn hàng, ghi cùng transaction với Order và được phát lại ít nhất một lần
+@Entity
+@Table(name = "order_outbox", indexes = @Index(name = "idx_order_outbox_published", columnList = "published_at, id"))
+public class OrderOutbox implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String ORDER_PLACED = "ORDER_PLACED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "order_id", nullable = false)
+    private long orderId;
+
+    @Column(nullable = false, length = 32)
+    private String eventType;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "published_at")
+    private Instant publishedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Instant publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+}
@@ -1,12 +1,17 @@
 package vn.hoidanit.laptopshop.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
@@ -14,7 +19,10 @@ import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
 @Entity
-@Table(name = "products")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_updated_at", columnList = "updated_at") })
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -49,6 +57,9 @@ public class Product implements Serializable {
     private String factory;
     private String target;
 
+    // đổi mỗi lần sửa sản phẩm, dùng cho ETag / Last-Modified của trang chi tiết
+    private Instant updatedAt;
+
     public long getId() {
         return id;
     }
@@ -129,6 +140,14 @@ public class Product implements Serializable {
         this.target = target;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     @Override
     public String toString() {
         return "Product [id=" + id + ", name=" + name + ", price=" + price + ", image=" + image + ", detailDesc="
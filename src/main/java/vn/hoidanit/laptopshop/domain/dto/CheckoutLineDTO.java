@@ -0,0 +1,32 @@
+package vn.hoidanit.laptopshop.domain.dto;
+
+// một dòng giỏ hàng khi đặt hàng: chỉ id và số liệu, không nạp Cart / Product / User
+public class CheckoutLineDTO {
+    private final long cartId;
+    private final long productId;
+    private final double price;
+    private final long quantity;
+
+    public CheckoutLineDTO(long cartId, long productId, double price, long quantity) {
+        this.cartId = cartId;
+        this.productId = productId;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public long getCartId() {
+        return cartId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+}
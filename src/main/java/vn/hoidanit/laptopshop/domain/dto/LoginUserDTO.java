@@ -0,0 +1,51 @@
+package vn.hoidanit.laptopshop.domain.dto;
+
+// mọi thứ cần cho đăng nhập, lấy bằng một query (users + roles + carts)
+public class LoginUserDTO {
+    private final long id;
+    private final String email;
+    private final String password;
+    private final String roleName;
+    private final String fullName;
+    private final String avatar;
+    private final int cartSum;
+
+    public LoginUserDTO(long id, String email, String password, String roleName, String fullName, String avatar,
+            int cartSum) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.roleName = roleName;
+        this.fullName = fullName;
+        this.avatar = avatar;
+        this.cartSum = cartSum;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getAvatar() {
+        return avatar;
+    }
+
+    public int getCartSum() {
+        return cartSum;
+    }
+}
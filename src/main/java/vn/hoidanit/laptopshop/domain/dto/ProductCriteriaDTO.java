@@ -9,6 +9,8 @@ public class ProductCriteriaDTO {
     private Optional<List<String>> target;
     private Optional<List<String>> price;
     private Optional<String> sort;
+    private Optional<String> cursor;
+    private Optional<String> q;
 
     public Optional<String> getPage() {
         return page;
@@ -49,4 +51,20 @@ public class ProductCriteriaDTO {
     public void setSort(Optional<String> sort) {
         this.sort = sort;
     }
+
+    public Optional<String> getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Optional<String> cursor) {
+        this.cursor = cursor;
+    }
+
+    public Optional<String> getQ() {
+        return q;
+    }
+
+    public void setQ(Optional<String> q) {
+        this.q = q;
+    }
 }
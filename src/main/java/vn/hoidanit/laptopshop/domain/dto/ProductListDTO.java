@@ -0,0 +1,57 @@
+package vn.hoidanit.laptopshop.domain.dto;
+
+// các cột hiển thị ở trang danh sách, không có detailDesc (MEDIUMTEXT)
+public class ProductListDTO {
+    private final long id;
+    private final String name;
+    private final double price;
+    private final String image;
+    private final String shortDesc;
+    private final String factory;
+    private final String target;
+    private final long sold;
+
+    public ProductListDTO(long id, String name, double price, String image, String shortDesc, String factory,
+            String target, long sold) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.image = image;
+        this.shortDesc = shortDesc;
+        this.factory = factory;
+        this.target = target;
+        this.sold = sold;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public String getShortDesc() {
+        return shortDesc;
+    }
+
+    public String getFactory() {
+        return factory;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public long getSold() {
+        return sold;
+    }
+}
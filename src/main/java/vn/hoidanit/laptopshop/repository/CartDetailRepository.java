@@ -1,8 +1,14 @@
 package vn.hoidanit.laptopshop.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
 import vn.hoidanit.laptopshop.domain.Cart;
 import vn.hoidanit.laptopshop.domain.CartDetail;
 import vn.hoidanit.laptopshop.domain.Product;
@@ -13,4 +19,21 @@ public interface CartDetailRepository extends JpaRepository<CartDetail, Long> {
 
     // Trả về đối tượng
     CartDetail findByCartAndProduct(Cart cart, Product product);
-}
\ No newline at end of file
+
+    // thêm dòng mới (giá lấy từ products) hoặc cộng dồn quantity trong một câu lệnh.
+    // MySQL trả về 1 = dòng mới, 2 = cộng dồn, 0 = không có giỏ hàng / sản phẩm
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_detail"))
+    @Query(value = "INSERT INTO cart_detail (cart_id, product_id, price, quantity) "
+            + "SELECT c.id, p.id, p.price, :quantity FROM carts c JOIN products p ON p.id = :productId "
+            + "WHERE c.user_id = :userId "
+            + "ON DUPLICATE KEY UPDATE quantity = cart_detail.quantity + :quantity", nativeQuery = true)
+    int upsertLine(@Param("userId") long userId, @Param("productId") long productId,
+            @Param("quantity") long quantity);
+
+    // xóa toàn bộ dòng của giỏ trong một câu lệnh
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_detail"))
+    @Query(value = "DELETE FROM cart_detail WHERE cart_id = :cartId", nativeQuery = true)
+    int deleteByCartId(@Param("cartId") long cartId);
+}
@@ -1,8 +1,14 @@
 package vn.hoidanit.laptopshop.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
 import vn.hoidanit.laptopshop.domain.Cart;
 import vn.hoidanit.laptopshop.domain.User;
 
@@ -10,4 +16,24 @@ import vn.hoidanit.laptopshop.domain.User;
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Cart findByUser(User user);
 
-}
\ No newline at end of file
+    // native query: khai báo bảng bị ghi để Hibernate không xóa toàn bộ second-level cache
+
+    // tạo giỏ hàng nếu user chưa có (dựa vào unique user_id), có rồi thì không đổi gì
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "INSERT INTO carts (user_id, sum) VALUES (:userId, 0) ON DUPLICATE KEY UPDATE user_id = user_id", nativeQuery = true)
+    int createIfAbsent(@Param("userId") long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "UPDATE carts SET sum = sum + 1 WHERE user_id = :userId", nativeQuery = true)
+    int incrementSum(@Param("userId") long userId);
+
+    @Query(value = "SELECT sum FROM carts WHERE user_id = :userId", nativeQuery = true)
+    Integer findSumByUserId(@Param("userId") long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "DELETE FROM carts WHERE id = :cartId", nativeQuery = true)
+    int deleteCart(@Param("cartId") long cartId);
+}
@@ -0,0 +1,50 @@
+package vn.hoidanit.laptopshop.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import vn.hoidanit.laptopshop.domain.OrderIntake;
+
+@Repository
+public interface OrderIntakeRepository extends JpaRepository<OrderIntake, Long> {
+
+    // các yêu cầu chưa thành đơn hàng của user (đang xử lý / bị từ chối) cho trang lịch sử
+    List<OrderIntake> findTop20ByUserIdAndStatusNotOrderByIdDesc(long userId, String status);
+
+    @Query("SELECT i.id FROM OrderIntake i WHERE i.status = 'PENDING' ORDER BY i.id")
+    List<Long> findPendingIds(Pageable pageable);
+
+    // [số yêu cầu đang chờ, thời điểm tạo của yêu cầu cũ nhất]
+    @Query("SELECT COUNT(i), MIN(i.createdAt) FROM OrderIntake i WHERE i.status = 'PENDING'")
+    List<Object[]> pendingStats();
+
+    // khóa yêu cầu để xử lý, worker khác đang giữ thì bỏ qua (lock timeout -2 = SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT i FROM OrderIntake i WHERE i.id = :id AND i.status = 'PENDING'")
+    Optional<OrderIntake> claim(@Param("id") long id);
+
+    // clearAutomatically: đọc lại intake sau đó để trả giỏ hàng, không lấy bản PENDING cũ
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OrderIntake i SET i.status = 'REJECTED', i.processedAt = :now WHERE i.id = :id AND i.status = 'PENDING'")
+    int markRejected(@Param("id") long id, @Param("now") Instant now);
+
+    // lỗi tạm thời: tăng attempts, quá maxAttempts thì chuyển FAILED
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OrderIntake i SET i.status = CASE WHEN i.attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE i.status END, "
+            + "i.attempts = i.attempts + 1, i.processedAt = :now WHERE i.id = :id AND i.status = 'PENDING'")
+    int recordFailure(@Param("id") long id, @Param("maxAttempts") int maxAttempts, @Param("now") Instant now);
+}
@@ -0,0 +1,25 @@
+package vn.hoidanit.laptopshop.repository;
+
+import java.util.List;
+
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import vn.hoidanit.laptopshop.domain.OrderOutbox;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutbox, Long> {
+
+    // sự kiện chưa phát, bỏ qua các dòng node khác đang phát
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT o FROM OrderOutbox o WHERE o.publishedAt IS NULL ORDER BY o.id")
+    List<OrderOutbox> lockUnpublished(Pageable pageable);
+}
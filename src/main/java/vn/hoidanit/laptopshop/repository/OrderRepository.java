@@ -2,6 +2,8 @@ package vn.hoidanit.laptopshop.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -11,4 +13,7 @@ import vn.hoidanit.laptopshop.domain.User;
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUser(User user);
+
+    // Slice: lấy size + 1 dòng để biết còn trang sau, không chạy COUNT
+    Slice<Order> findAllBy(Pageable pageable);
 }
@@ -1,16 +1,67 @@
 package vn.hoidanit.laptopshop.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
+import vn.hoidanit.laptopshop.service.catalog.CatalogEntry;
+import vn.hoidanit.laptopshop.service.catalog.CatalogStamp;
+import vn.hoidanit.laptopshop.service.search.SearchDocument;
+import vn.hoidanit.laptopshop.service.search.Suggestion;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository
+        extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
     Page<Product> findAll(Pageable page);
 
     Page<Product> findAll(Specification<Product> spec, Pageable page);
-}
\ No newline at end of file
+
+    // Slice: lấy size + 1 dòng để biết còn trang sau, không chạy COUNT
+    Slice<Product> findAllBy(Pageable page);
+
+    // projection cho trang danh sách: không đọc cột detailDesc
+    @Query("SELECT new vn.hoidanit.laptopshop.domain.dto.ProductListDTO(p.id, p.name, p.price, p.image, p.shortDesc, p.factory, p.target, p.sold) FROM Product p")
+    Slice<ProductListDTO> findAllListViews(Pageable page);
+
+    @Query("SELECT new vn.hoidanit.laptopshop.domain.dto.ProductListDTO(p.id, p.name, p.price, p.image, p.shortDesc, p.factory, p.target, p.sold) FROM Product p WHERE p.id IN :ids")
+    List<ProductListDTO> findListViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new vn.hoidanit.laptopshop.service.catalog.CatalogEntry(p.id, p.price, p.factory, p.target) FROM Product p")
+    List<CatalogEntry> findAllCatalogEntries();
+
+    // các node so stamp này để biết catalog đổi ở node khác
+    @Query("SELECT new vn.hoidanit.laptopshop.service.catalog.CatalogStamp(COUNT(p), MAX(p.updatedAt)) FROM Product p")
+    CatalogStamp findCatalogStamp();
+
+    @Query("SELECT new vn.hoidanit.laptopshop.service.search.SearchDocument(p.id, p.name, p.shortDesc, p.detailDesc) FROM Product p")
+    List<SearchDocument> findAllSearchDocuments();
+
+    @Query("SELECT new vn.hoidanit.laptopshop.service.search.SearchDocument(p.id, p.name, p.shortDesc, p.detailDesc) FROM Product p WHERE p.updatedAt >= :since")
+    List<SearchDocument> findSearchDocumentsUpdatedSince(@Param("since") Instant since);
+
+    @Query("SELECT p.id FROM Product p")
+    List<Long> findAllIds();
+
+    @Query("SELECT new vn.hoidanit.laptopshop.service.search.Suggestion(p.id, p.name, p.sold) FROM Product p")
+    List<Suggestion> findAllSuggestions();
+
+    // version cho ETag / Last-Modified của trang chi tiết
+    @Query("SELECT p.updatedAt FROM Product p WHERE p.id = :id")
+    Instant findUpdatedAtById(@Param("id") long id);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.updatedAt = :now WHERE p.updatedAt IS NULL")
+    int fillMissingUpdatedAt(@Param("now") Instant now);
+}
@@ -0,0 +1,14 @@
+package vn.hoidanit.laptopshop.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
+
+public interface ProductRepositoryCustom {
+    // chạy Specification nhưng chỉ SELECT các cột của ProductListDTO
+    List<ProductListDTO> findListViews(Specification<Product> spec, Sort sort, long offset, int limit);
+}
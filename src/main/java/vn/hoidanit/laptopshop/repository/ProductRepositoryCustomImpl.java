@@ -0,0 +1,53 @@
+package vn.hoidanit.laptopshop.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.Product_;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductListDTO> findListViews(Specification<Product> spec, Sort sort, long offset, int limit) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductListDTO> query = cb.createQuery(ProductListDTO.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(cb.construct(ProductListDTO.class,
+                root.get(Product_.id),
+                root.get(Product_.name),
+                root.get(Product_.price),
+                root.get(Product_.image),
+                root.get(Product_.shortDesc),
+                root.get(Product_.factory),
+                root.get(Product_.target),
+                root.get(Product_.sold)));
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        if (sort != null && sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+
+        return this.entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,11 +1,16 @@
 package vn.hoidanit.laptopshop.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
 import vn.hoidanit.laptopshop.domain.Role;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    // query cache: đăng ký / tạo user không phải query lại bảng roles
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Role findByName(String name);
 }
@@ -2,10 +2,17 @@ package vn.hoidanit.laptopshop.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.hoidanit.laptopshop.domain.User;
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
+import vn.hoidanit.laptopshop.service.auth.LoginStamp;
+import vn.hoidanit.laptopshop.service.auth.UserEmail;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -20,4 +27,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     User findByEmail(String email);
+
+    // đăng nhập: user + role + số sản phẩm trong giỏ trong một round trip
+    @Query("SELECT new vn.hoidanit.laptopshop.domain.dto.LoginUserDTO(u.id, u.email, u.password, r.name, u.fullName, u.avatar, COALESCE(c.sum, 0)) "
+            + "FROM User u LEFT JOIN u.role r LEFT JOIN u.cart c WHERE u.email = :email")
+    LoginUserDTO findLoginUserByEmail(@Param("email") String email);
+
+    // kiểm tra lại entry của LoginUserCache: mật khẩu / role / giỏ hàng đổi ở node khác
+    @Query("SELECT new vn.hoidanit.laptopshop.service.auth.LoginStamp(u.password, r.name, COALESCE(c.sum, 0)) "
+            + "FROM User u LEFT JOIN u.role r LEFT JOIN u.cart c WHERE u.email = :email")
+    LoginStamp findLoginStampByEmail(@Param("email") String email);
+
+    // keyset theo id, dùng để nạp bloom filter email theo lô
+    @Query("SELECT new vn.hoidanit.laptopshop.service.auth.UserEmail(u.id, u.email) FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserEmail> findEmailsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // Slice: lấy size + 1 dòng để biết còn trang sau, không chạy COUNT
+    Slice<User> findAllBy(Pageable pageable);
 }
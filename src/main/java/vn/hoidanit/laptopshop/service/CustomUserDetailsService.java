@@ -5,12 +5,15 @@ import java.util.Collections;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
+
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     private final UserService userService;
 
     public CustomUserDetailsService(UserService userService) {
@@ -19,7 +22,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        vn.hoidanit.laptopshop.domain.User user = this.userService.getUserByEmail(username);
+        LoginUserDTO user = this.userService.getLoginUser(username);
         if (user == null) {
             throw new UsernameNotFoundException("user not found");
         }
@@ -27,7 +30,14 @@ public class CustomUserDetailsService implements UserDetailsService {
         return new User(
                 user.getEmail(),
                 user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().getName())));
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRoleName())));
+    }
+
+    // DaoAuthenticationProvider gọi sau khi đăng nhập thành công nếu hash cần nâng cấp
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        this.userService.updatePasswordHash(user.getUsername(), newPassword);
+        return User.withUserDetails(user).password(newPassword).build();
     }
 
 }
@@ -6,27 +6,44 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import vn.hoidanit.laptopshop.domain.Order;
 import vn.hoidanit.laptopshop.domain.OrderDetail;
+import vn.hoidanit.laptopshop.domain.OrderIntake;
 import vn.hoidanit.laptopshop.domain.User;
 import vn.hoidanit.laptopshop.repository.OrderDetailRepository;
 import vn.hoidanit.laptopshop.repository.OrderRepository;
+import vn.hoidanit.laptopshop.service.order.OrderIntakeService;
+import vn.hoidanit.laptopshop.service.order.OrderPlacedEvent;
+import vn.hoidanit.laptopshop.service.pagination.PageCounter;
 
 @Service
 public class OrderService {
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final PageCounter pageCounter;
+    private final OrderIntakeService orderIntakeService;
 
     public OrderService(
             OrderRepository orderRepository,
-            OrderDetailRepository orderDetailRepository) {
+            OrderDetailRepository orderDetailRepository,
+            PageCounter pageCounter,
+            OrderIntakeService orderIntakeService) {
         this.orderDetailRepository = orderDetailRepository;
         this.orderRepository = orderRepository;
+        this.pageCounter = pageCounter;
+        this.orderIntakeService = orderIntakeService;
+    }
+
+    // đơn hàng mới do OrderIntakeWorker tạo, nhận qua order_outbox; chỉ đếm khi lô relay đã commit
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        this.pageCounter.recordInsert("orders");
     }
 
     public Page<Order> fetchAllOrders(Pageable page) {
-        return this.orderRepository.findAll(page);
+        return this.pageCounter.page("orders", page, this.orderRepository::findAllBy, this.orderRepository::count);
     }
 
     public Optional<Order> fetchOrderById(long id) {
@@ -42,9 +59,9 @@ public class OrderService {
             for (OrderDetail orderDetail : orderDetails) {
                 this.orderDetailRepository.deleteById(orderDetail.getId());
             }
+            this.orderRepository.deleteById(id);
+            this.pageCounter.recordDelete("orders");
         }
-
-        this.orderRepository.deleteById(id);
     }
 
     public void updateOrder(Order order) {
@@ -59,4 +76,9 @@ public class OrderService {
     public List<Order> fetchOrderByUser(User user) {
         return this.orderRepository.findByUser(user);
     }
+
+    // yêu cầu đặt hàng chưa thành đơn (đang xử lý / hết hàng / lỗi)
+    public List<OrderIntake> fetchOpenIntakesByUser(User user) {
+        return this.orderIntakeService.fetchOpenIntakesByUser(user.getId());
+    }
 }
@@ -1,26 +1,59 @@
 package vn.hoidanit.laptopshop.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.servlet.http.HttpSession;
 import vn.hoidanit.laptopshop.domain.Cart;
 import vn.hoidanit.laptopshop.domain.CartDetail;
-import vn.hoidanit.laptopshop.domain.Order;
-import vn.hoidanit.laptopshop.domain.OrderDetail;
+import vn.hoidanit.laptopshop.domain.OrderIntake;
 import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.Product_;
 import vn.hoidanit.laptopshop.domain.User;
 import vn.hoidanit.laptopshop.domain.dto.ProductCriteriaDTO;
+import vn.hoidanit.laptopshop.domain.dto.ProductListDTO;
 import vn.hoidanit.laptopshop.repository.CartDetailRepository;
 import vn.hoidanit.laptopshop.repository.CartRepository;
 import vn.hoidanit.laptopshop.repository.OrderDetailRepository;
 import vn.hoidanit.laptopshop.repository.OrderRepository;
 import vn.hoidanit.laptopshop.repository.ProductRepository;
+import vn.hoidanit.laptopshop.service.cart.CartEngine;
+import vn.hoidanit.laptopshop.service.catalog.CatalogIndex;
+import vn.hoidanit.laptopshop.service.catalog.CatalogPage;
+import vn.hoidanit.laptopshop.service.catalog.CatalogPageCache;
+import vn.hoidanit.laptopshop.service.catalog.CatalogQueryKey;
+import vn.hoidanit.laptopshop.service.catalog.CatalogSort;
+import vn.hoidanit.laptopshop.service.catalog.FacetCounts;
+import vn.hoidanit.laptopshop.service.catalog.FacetedPage;
+import vn.hoidanit.laptopshop.service.catalog.PriceBucket;
+import vn.hoidanit.laptopshop.service.catalog.ProductStamps;
+import vn.hoidanit.laptopshop.service.order.OrderIntakeService;
+import vn.hoidanit.laptopshop.service.pagination.PageCounter;
+import vn.hoidanit.laptopshop.service.pagination.ProductCursor;
+import vn.hoidanit.laptopshop.service.search.ProductSearchIndex;
+import vn.hoidanit.laptopshop.service.search.ProductSuggester;
+import vn.hoidanit.laptopshop.service.search.SearchHit;
+import vn.hoidanit.laptopshop.service.search.Suggestion;
+import vn.hoidanit.laptopshop.service.session.SessionPrincipal;
+import vn.hoidanit.laptopshop.service.stock.FlashSaleStock;
 import vn.hoidanit.laptopshop.service.specification.ProductSpecs;
 
 @Service
@@ -31,32 +64,107 @@ public class ProductService {
     private final UserService userService;
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final CatalogIndex catalogIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final CatalogPageCache catalogPageCache;
+    private final PageCounter pageCounter;
+    private final ProductStamps productStamps;
+    private final CartEngine cartEngine;
+    private final OrderIntakeService orderIntakeService;
+    private final FlashSaleStock flashSaleStock;
+    private final TransactionTemplate transactionTemplate;
 
     public ProductService(ProductRepository productRepository, CartRepository cartRepository,
             CartDetailRepository cartDetailRepository, UserService userService, OrderRepository orderRepository,
-            OrderDetailRepository orderDetailRepository) {
+            OrderDetailRepository orderDetailRepository, CatalogIndex catalogIndex,
+            ProductSearchIndex productSearchIndex, ProductSuggester productSuggester,
+            CatalogPageCache catalogPageCache, PageCounter pageCounter, ProductStamps productStamps,
+            CartEngine cartEngine, OrderIntakeService orderIntakeService,
+            FlashSaleStock flashSaleStock, PlatformTransactionManager transactionManager) {
         this.productRepository = productRepository;
         this.cartRepository = cartRepository;
         this.cartDetailRepository = cartDetailRepository;
         this.userService = userService;
         this.orderRepository = orderRepository;
         this.orderDetailRepository = orderDetailRepository;
+        this.catalogIndex = catalogIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggester = productSuggester;
+        this.catalogPageCache = catalogPageCache;
+        this.pageCounter = pageCounter;
+        this.productStamps = productStamps;
+        this.cartEngine = cartEngine;
+        this.orderIntakeService = orderIntakeService;
+        this.flashSaleStock = flashSaleStock;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Product createProduct(Product pr) {
-        return this.productRepository.save(pr);
+        boolean isNew = pr.getId() == 0;
+        pr.setUpdatedAt(this.productStamps.next(pr.getId()));
+        Product saved = this.productRepository.save(pr);
+        if (isNew) {
+            this.pageCounter.recordInsert("products");
+        }
+        this.catalogIndex.refresh();
+        this.productSearchIndex.index(saved);
+        this.productSuggester.upsert(saved);
+        return saved;
+    }
+
+    // trang danh sách chỉ cần ProductListDTO, detailDesc chỉ đọc ở trang chi tiết
+    public Page<ProductListDTO> fetchProducts(Pageable page) {
+        return this.pageCounter.page("products", page, this.productRepository::findAllListViews,
+                this.productRepository::count);
     }
 
-    public Page<Product> fetchProducts(Pageable page) {
-        return this.productRepository.findAll(page);
+    public Page<ProductListDTO> fetchProductsWithSpec(Pageable page, ProductCriteriaDTO productCriteriaDTO) {
+        if (this.catalogIndex.isReady()) {
+            // lọc + phân trang trên bitmap, chỉ query DB theo danh sách id
+            CatalogPage catalogPage = this.queryCatalog(page, productCriteriaDTO);
+            return new PageImpl<>(this.fetchProductsByIds(catalogPage.ids()), page, catalogPage.total());
+        }
+        return this.fetchListViews(page, this.buildSpecification(productCriteriaDTO),
+                countKey(productCriteriaDTO, null));
+    }
+
+    // tổng theo CountMode của PageCounter, cache theo bộ lọc ở chế độ CACHED
+    private Page<ProductListDTO> fetchListViews(Pageable page, Specification<Product> spec, String countKey) {
+        return this.pageCounter.page(countKey, page, p -> {
+            // đọc thêm một dòng để biết còn trang sau (chế độ SLICE)
+            List<ProductListDTO> rows = this.productRepository.findListViews(spec, p.getSort(), p.getOffset(),
+                    p.getPageSize() + 1);
+            boolean hasNext = rows.size() > p.getPageSize();
+            return new SliceImpl<>(hasNext ? rows.subList(0, p.getPageSize()) : rows, p, hasNext);
+        }, () -> this.productRepository.count(spec));
+    }
+
+    // khóa tổng của một bộ lọc: không gồm sort / trang, danh sách giá trị đã sắp xếp
+    private static String countKey(ProductCriteriaDTO productCriteriaDTO, String q) {
+        StringBuilder key = new StringBuilder("products?");
+        appendFilter(key, "factory", productCriteriaDTO.getFactory());
+        appendFilter(key, "target", productCriteriaDTO.getTarget());
+        appendFilter(key, "price", productCriteriaDTO.getPrice());
+        if (q != null) {
+            key.append("q=").append(q.trim().toLowerCase(Locale.ROOT));
+        }
+        return key.toString();
     }
 
-    public Page<Product> fetchProductsWithSpec(Pageable page, ProductCriteriaDTO productCriteriaDTO) {
-        if (productCriteriaDTO.getTarget() == null
-                && productCriteriaDTO.getFactory() == null
-                && productCriteriaDTO.getPrice() == null) {
-            return this.productRepository.findAll(page);
+    private static void appendFilter(StringBuilder key, String name, Optional<List<String>> values) {
+        if (values != null && values.isPresent() && !values.get().isEmpty()) {
+            key.append(name).append('=').append(new TreeSet<>(values.get())).append('&');
         }
+    }
+
+    // các tổ hợp lọc / sắp xếp lặp lại nhiều, cache theo khóa đã chuẩn hóa + stamp catalog
+    private CatalogPage queryCatalog(Pageable page, ProductCriteriaDTO productCriteriaDTO) {
+        CatalogQueryKey key = CatalogQueryKey.of(productCriteriaDTO, page, this.catalogIndex.getStamp());
+        return this.catalogPageCache.get(key, () -> this.catalogIndex.queryWithFacets(productCriteriaDTO, page));
+    }
+
+    public Specification<Product> buildSpecification(ProductCriteriaDTO productCriteriaDTO) {
         Specification<Product> combinedSpec = Specification.where(null);
         if (productCriteriaDTO.getTarget() != null && productCriteriaDTO.getTarget().isPresent()) {
             Specification<Product> currentSpecs = ProductSpecs.matchListTarget(productCriteriaDTO.getTarget().get());
@@ -71,7 +179,107 @@ public class ProductService {
             combinedSpec = combinedSpec.and(currentSpecs);
         }
 
-        return this.productRepository.findAll(combinedSpec, page);
+        return combinedSpec;
+    }
+
+    // tìm kiếm toàn văn, kết hợp với các bộ lọc factory / target / price
+    public Page<ProductListDTO> searchProducts(Pageable page, ProductCriteriaDTO productCriteriaDTO) {
+        String q = productCriteriaDTO.getQ().get();
+        if (!this.productSearchIndex.isReady() || !this.catalogIndex.isReady()) {
+            Specification<Product> spec = this.buildSpecification(productCriteriaDTO).and(ProductSpecs.nameLike(q));
+            return this.fetchListViews(page, spec, countKey(productCriteriaDTO, q));
+        }
+
+        List<SearchHit> hits = this.productSearchIndex.search(q, this.catalogIndex.matcher(productCriteriaDTO));
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.id());
+        }
+        // không chọn sắp xếp theo giá thì giữ thứ tự theo độ liên quan
+        ids = this.catalogIndex.sortByPrice(ids, CatalogSort.fromPageable(page));
+
+        int from = (int) Math.min(page.getOffset(), ids.size());
+        int to = Math.min(from + page.getPageSize(), ids.size());
+        return new PageImpl<>(this.fetchProductsByIds(ids.subList(from, to)), page, ids.size());
+    }
+
+    // phân trang keyset: trang sâu tốn chi phí như trang đầu
+    public Window<ProductListDTO> fetchProductsWithCursor(ProductCriteriaDTO productCriteriaDTO, int size) {
+        CatalogSort catalogSort = CatalogSort.fromSlug(productCriteriaDTO.getSort());
+        String cursor = productCriteriaDTO.getCursor() != null && productCriteriaDTO.getCursor().isPresent()
+                ? productCriteriaDTO.getCursor().get()
+                : null;
+        return this.scrollListViews(this.buildSpecification(productCriteriaDTO), catalogSort, cursor, size);
+    }
+
+    public Window<ProductListDTO> fetchProductsWithCursor(String cursor, int size) {
+        return this.scrollListViews(Specification.where(null), CatalogSort.NONE, cursor, size);
+    }
+
+    // keyset: WHERE (price, id) > (?, ?) ORDER BY price, id LIMIT size + 1 - không OFFSET, không COUNT
+    private Window<ProductListDTO> scrollListViews(Specification<Product> spec, CatalogSort catalogSort,
+            String cursor, int size) {
+        Sort sort = catalogSort.toKeysetSort();
+        Map<String, Object> keys = ProductCursor.decode(cursor, sort).getKeys();
+        if (!keys.isEmpty()) {
+            long id = (Long) keys.get(Product_.ID);
+            Specification<Product> after = catalogSort == CatalogSort.NONE
+                    ? ProductSpecs.afterId(id)
+                    : ProductSpecs.afterPriceAndId((Double) keys.get(Product_.PRICE), id,
+                            catalogSort == CatalogSort.PRICE_ASC);
+            spec = spec.and(after);
+        }
+
+        List<ProductListDTO> rows = this.productRepository.findListViews(spec, sort, 0, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<ProductListDTO> content = hasNext ? rows.subList(0, size) : rows;
+        return Window.from(content, i -> this.positionOf(content.get(i), catalogSort), hasNext);
+    }
+
+    private ScrollPosition positionOf(ProductListDTO product, CatalogSort catalogSort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (catalogSort != CatalogSort.NONE) {
+            keys.put(Product_.PRICE, product.getPrice());
+        }
+        keys.put(Product_.ID, product.getId());
+        return ScrollPosition.forward(keys);
+    }
+
+    public FacetCounts fetchFacetCounts(ProductCriteriaDTO productCriteriaDTO) {
+        if (!this.catalogIndex.isReady()) {
+            return FacetCounts.EMPTY;
+        }
+        return this.catalogIndex.facetCounts(productCriteriaDTO);
+    }
+
+    // kết quả trang + số lượng theo từng giá trị lọc, tính trên cùng một snapshot
+    public FacetedPage<ProductListDTO> fetchProductsWithFacets(Pageable page, ProductCriteriaDTO productCriteriaDTO) {
+        if (!this.catalogIndex.isReady()) {
+            return new FacetedPage<>(this.fetchProductsWithSpec(page, productCriteriaDTO), FacetCounts.EMPTY);
+        }
+        CatalogPage catalogPage = this.queryCatalog(page, productCriteriaDTO);
+        Page<ProductListDTO> products = new PageImpl<>(this.fetchProductsByIds(catalogPage.ids()), page,
+                catalogPage.total());
+        return new FacetedPage<>(products, catalogPage.facets());
+    }
+
+    // giữ đúng thứ tự của danh sách id truyền vào
+    public List<ProductListDTO> fetchProductsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<ProductListDTO>();
+        }
+        Map<Long, ProductListDTO> byId = new HashMap<>();
+        for (ProductListDTO product : this.productRepository.findListViewsByIdIn(ids)) {
+            byId.put(product.getId(), product);
+        }
+        List<ProductListDTO> products = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductListDTO product = byId.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
     }
 
     // case 1
@@ -121,30 +329,9 @@ public class ProductService {
         Specification<Product> combinedSpec = Specification.where(null);
 
         for (String p : price) {
-            double min = 0;
-            double max = 0;
-
-            switch (p) {
-                case "duoi-10trieu":
-                    min = 1;
-                    max = 10000000;
-                    break;
-                case "10-15trieu":
-                    min = 10000000;
-                    max = 15000000;
-                    break;
-                case "15-20trieu":
-                    min = 15000000;
-                    max = 20000000;
-                    break;
-                case "tren-20trieu":
-                    min = 20000000;
-                    max = 2000000000;
-                    break;
-            }
-
-            if (min != 0 && max != 0) {
-                Specification<Product> rangeSpec = ProductSpecs.matchMultiplePrice(min, max);
+            PriceBucket bucket = PriceBucket.fromSlug(p);
+            if (bucket != null) {
+                Specification<Product> rangeSpec = ProductSpecs.matchMultiplePrice(bucket.getMin(), bucket.getMax());
                 combinedSpec = combinedSpec.or(rangeSpec);
             }
         }
@@ -158,62 +345,64 @@ public class ProductService {
 
     public void deleteProduct(long id) {
         this.productRepository.deleteById(id);
+        this.pageCounter.recordDelete("products");
+        this.catalogIndex.refresh();
+        this.productSearchIndex.remove(id);
+        this.productSuggester.remove(id);
     }
 
-    public void handleAddProductToCart(String email, long productId, HttpSession session, long quantity) {
-
-        User user = this.userService.getUserByEmail(email);
-        if (user != null) {
-            // check user đã có Cart chưa ? nếu chưa -> tạo mới
-            Cart cart = this.cartRepository.findByUser(user);
-
-            if (cart == null) {
-                // tạo mới cart
-                Cart otherCart = new Cart();
-                otherCart.setUser(user);
-                otherCart.setSum(0);
-
-                cart = this.cartRepository.save(otherCart);
-            }
+    public long getProductLastModified(long id) {
+        return this.productStamps.lastModified(id);
+    }
 
-            // save cart_detail
-            // tìm product by id
-
-            Optional<Product> productOptional = this.productRepository.findById(productId);
-            if (productOptional.isPresent()) {
-                Product realProduct = productOptional.get();
-
-                // check sản phẩm đã từng được thêm vào giỏ hàng trước đây chưa ?
-                CartDetail oldDetail = this.cartDetailRepository.findByCartAndProduct(cart, realProduct);
-                //
-                if (oldDetail == null) {
-                    CartDetail cd = new CartDetail();
-                    cd.setCart(cart);
-                    cd.setProduct(realProduct);
-                    cd.setPrice(realProduct.getPrice());
-                    cd.setQuantity(quantity);
-                    this.cartDetailRepository.save(cd);
-
-                    // update cart (sum);
-                    int s = cart.getSum() + 1;
-                    cart.setSum(s);
-                    this.cartRepository.save(cart);
-                    session.setAttribute("sum", s);
-                } else {
-                    oldDetail.setQuantity(oldDetail.getQuantity() + quantity);
-                    this.cartDetailRepository.save(oldDetail);
-                }
+    public List<Suggestion> suggestProducts(String prefix, int limit) {
+        return this.productSuggester.suggest(prefix, limit);
+    }
 
-            }
+    // thêm vào giỏ: sản phẩm đã có trong giỏ -> 1 câu lệnh; dòng mới -> thêm UPDATE sum và đọc lại
+    // sum; giỏ hàng tạo lần đầu ngay trong cùng transaction. Trả về sum mới (đồng thời ghi vào session).
+    // Khi bật cart.write-behind.enabled thì chỉ ghi journal, CartEngine flush xuống DB theo lô
+    // (ngoài transaction: flush của CartEngine tự mở transaction, không giữ hai connection)
+    public int handleAddProductToCart(long userId, long productId, HttpSession session, long quantity) {
+        Object current = session.getAttribute("sum");
+        int sum = current instanceof Integer i ? i : 0;
+        if (quantity <= 0 || this.flashSaleStock.isSoldOut(productId)) {
+            // flash sale hết hàng: từ chối ngay, không chạm DB
+            return sum;
+        }
+        if (this.cartEngine.isEnabled()) {
+            return this.cartEngine.add(userId, productId, quantity, session);
+        }
+        return this.transactionTemplate.execute(status -> this.addToCart(userId, productId, session, quantity, sum));
+    }
 
+    private int addToCart(long userId, long productId, HttpSession session, long quantity, int sum) {
+        int affected = this.cartDetailRepository.upsertLine(userId, productId, quantity);
+        if (affected == 0) {
+            // user chưa có giỏ hàng (hoặc sản phẩm không tồn tại): tạo giỏ rồi thử lại
+            this.cartRepository.createIfAbsent(userId);
+            affected = this.cartDetailRepository.upsertLine(userId, productId, quantity);
+        }
+        if (affected == 1) {
+            // sum = số sản phẩm khác nhau trong giỏ, chỉ tăng khi có dòng mới
+            this.cartRepository.incrementSum(userId);
+            Integer stored = this.cartRepository.findSumByUserId(userId);
+            sum = stored == null ? 0 : stored;
+            session.setAttribute("sum", sum);
         }
+        return sum;
     }
 
     public Cart fetchByUser(User user) {
+        this.cartEngine.flush(user.getId());
         return this.cartRepository.findByUser(user);
     }
 
     public void handleRemoveCartDetail(long cartDetailId, HttpSession session) {
+        SessionPrincipal principal = SessionPrincipal.of(session);
+        if (principal != null) {
+            this.cartEngine.flush(principal.getId());
+        }
         Optional<CartDetail> cartDetailOptional = this.cartDetailRepository.findById(cartDetailId);
         if (cartDetailOptional.isPresent()) {// khác null
             CartDetail cartDetail = cartDetailOptional.get();
@@ -234,6 +423,7 @@ public class ProductService {
                 this.cartRepository.deleteById(currenCart.getId());
                 session.setAttribute("sum", 0);
             }
+            this.cartEngine.forget(currenCart.getUser().getId());
         }
     }
 
@@ -242,60 +432,27 @@ public class ProductService {
             Optional<CartDetail> cdOptional = this.cartDetailRepository.findById(cartDetail.getId());
             if (cdOptional.isPresent()) {
                 CartDetail currentCartDetail = cdOptional.get();
+                // số lượng trên form là giá trị tuyệt đối: ghi các lần thêm đang chờ trước khi ghi đè
+                this.cartEngine.flush(currentCartDetail.getCart().getUser().getId());
                 currentCartDetail.setQuantity(cartDetail.getQuantity());
                 this.cartDetailRepository.save(currentCartDetail);
             }
         }
     }
 
+    // chỉ chuyển giỏ hàng thành một dòng order_intake, OrderIntakeWorker tạo đơn hàng sau đó.
+    // Sản phẩm flash sale đã hết -> InsufficientStockException ngay, giỏ giữ nguyên
     public void handlePlaceOrder(User user, HttpSession session, String receiverName, String receiverAddress,
             String receiverPhone) {
 
-        // Bước 1: get cart by user
-        Cart cart = this.cartRepository.findByUser(user);
-        if (cart != null) {
-            List<CartDetail> cartDetails = cart.getCartDetails();// Lấy hết sản phẩm trong giỏ hàng
-
-            if (cartDetails != null) {
-
-                // create order
-                Order order = new Order();
-                order.setUser(user);
-                order.setReceiverName(receiverName);
-                order.setReceicerAddress(receiverAddress);
-                order.setReceiverPhone(receiverPhone);
-                order.setStatus("PENDING");
-
-                double sum = 0;
-                for (CartDetail cartDetail : cartDetails) {
-                    sum += cartDetail.getPrice();
-                }
-
-                order.setTotalPrice(sum);
-                order = this.orderRepository.save(order);
-
-                // create orderDetail
-                for (CartDetail cartDetail : cartDetails) {
-                    OrderDetail orderDetail = new OrderDetail();
-                    orderDetail.setOrder(order);
-                    orderDetail.setPrice(cartDetail.getPrice());
-                    orderDetail.setProduct(cartDetail.getProduct());
-                    orderDetail.setQuantity(cartDetail.getQuantity());
-
-                    this.orderDetailRepository.save(orderDetail);
-                }
-
-                // Bước 2: Xóa CartDetail và Cart
-                for (CartDetail cd : cartDetails) {
-                    this.cartDetailRepository.deleteById(cd.getId());
-                }
-
-                this.cartRepository.deleteById(cart.getId());
-
-                // Bước 3: Update session
-                session.setAttribute("sum", 0);
-            }
+        // Bước 1 + 2: lấy giỏ hàng của user và ghi yêu cầu đặt hàng
+        OrderIntake intake = this.orderIntakeService.submit(user.getId(), receiverName, receiverAddress,
+                receiverPhone);
+        if (intake == null) {
+            return;
         }
 
+        // Bước 3: Update session
+        session.setAttribute("sum", 0);
     }
 }
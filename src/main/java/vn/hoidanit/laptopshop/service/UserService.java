@@ -2,17 +2,22 @@ package vn.hoidanit.laptopshop.service;
 
 import java.util.List;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import vn.hoidanit.laptopshop.domain.Role;
 import vn.hoidanit.laptopshop.domain.User;
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
 import vn.hoidanit.laptopshop.domain.dto.RegisterDTO;
 import vn.hoidanit.laptopshop.repository.OrderRepository;
 import vn.hoidanit.laptopshop.repository.ProductRepository;
 import vn.hoidanit.laptopshop.repository.RoleRepository;
 import vn.hoidanit.laptopshop.repository.UserRepository;
+import vn.hoidanit.laptopshop.service.auth.EmailBloomFilter;
+import vn.hoidanit.laptopshop.service.auth.LoginUserCache;
+import vn.hoidanit.laptopshop.service.pagination.PageCounter;
 
 @Service
 public class UserService {
@@ -20,25 +25,45 @@ public class UserService {
     private final RoleRepository roleRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final PageCounter pageCounter;
+    private final LoginUserCache loginUserCache;
+    private final EmailBloomFilter emailBloomFilter;
 
     public UserService(UserRepository userRepository,
-            RoleRepository roleRepository, ProductRepository productRepository, OrderRepository orderRepository) {
+            RoleRepository roleRepository, ProductRepository productRepository, OrderRepository orderRepository,
+            PageCounter pageCounter, LoginUserCache loginUserCache, EmailBloomFilter emailBloomFilter) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.pageCounter = pageCounter;
+        this.loginUserCache = loginUserCache;
+        this.emailBloomFilter = emailBloomFilter;
     }
 
     public Page<User> getAllUsers(Pageable page) {
-        return this.userRepository.findAll(page);
+        return this.pageCounter.page("users", page, this.userRepository::findAllBy, this.userRepository::count);
     }
 
     public List<User> getAllUsersByEmail(String email) {
         return this.userRepository.findOneByEmail(email);
     }
 
+    // email trùng (uk_users_email) ném DataIntegrityViolationException
     public User handleSaveUser(User user) {
-        User eric = this.userRepository.save(user);
+        boolean isNew = user.getId() == 0;
+        User eric;
+        try {
+            eric = this.userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // email do node khác đăng ký: bloom filter của node này chưa biết
+            this.emailBloomFilter.add(user.getEmail());
+            throw e;
+        }
+        if (isNew) {
+            this.pageCounter.recordInsert("users");
+        }
+        this.emailBloomFilter.add(eric.getEmail());
         System.out.println(eric);
         return eric;
     }
@@ -49,6 +74,7 @@ public class UserService {
 
     public void deleteAUser(long id) {
         this.userRepository.deleteById(id);
+        this.pageCounter.recordDelete("users");
     }
 
     public Role getRoleByName(String name) {
@@ -64,13 +90,45 @@ public class UserService {
     }
 
     public boolean checkEmailExist(String email) {
-        return this.userRepository.existsByEmail(email);
+        // bloom filter chỉ là gợi ý (chỉ biết email đăng ký qua node này), uk_users_email mới là kiểm tra cuối
+        if (!this.emailBloomFilter.mightContain(email)) {
+            return false;
+        }
+        boolean exists = this.userRepository.existsByEmail(email);
+        if (!exists && this.emailBloomFilter.isReady()) {
+            this.emailBloomFilter.recordFalsePositive();
+        }
+        return exists;
     }
 
     public User getUserByEmail(String email) {
         return this.userRepository.findByEmail(email);
     }
 
+    public LoginUserDTO getLoginUser(String email) {
+        return this.loginUserCache.get(email, this.userRepository::findLoginUserByEmail,
+                this.userRepository::findLoginStampByEmail);
+    }
+
+    // sau khi xác thực xong: dùng lại user CustomUserDetailsService vừa nạp
+    public LoginUserDTO getAuthenticatedLoginUser(String email) {
+        LoginUserDTO user = this.loginUserCache.peek(email);
+        return user != null ? user : this.getLoginUser(email);
+    }
+
+    public void updatePasswordHash(String email, String hashPassword) {
+        User user = this.userRepository.findByEmail(email);
+        if (user != null) {
+            user.setPassword(hashPassword);
+            this.userRepository.save(user);
+            this.loginUserCache.evict(email);
+        }
+    }
+
+    public void evictLoginUser(String email) {
+        this.loginUserCache.evict(email);
+    }
+
     public long countUsers() {
         return this.userRepository.count();
     }
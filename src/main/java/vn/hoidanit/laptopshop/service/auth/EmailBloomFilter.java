@@ -0,0 +1,160 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.hoidanit.laptopshop.repository.UserRepository;
+
+/**
+ * Bloom filter các email đã đăng ký, dùng để bỏ qua query existsByEmail khi
+ * đăng ký. Filter nằm trong bộ nhớ từng node và chỉ được cập nhật khi node này
+ * lưu user, nên mightContain = false chỉ là gợi ý: email do node khác vừa đăng
+ * ký vẫn có thể lọt qua và bị chặn bởi unique key uk_users_email khi lưu.
+ * Không hỗ trợ xóa: user bị xóa chỉ làm tăng tỉ lệ dương tính giả cho tới lần
+ * khởi động sau.
+ */
+@Component
+public class EmailBloomFilter {
+    private final UserRepository userRepository;
+    private final int batchSize;
+    private final double fpp;
+    private final long numBits;
+    private final int numHashes;
+    private final AtomicLongArray bits;
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong positives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private volatile boolean ready;
+
+    public EmailBloomFilter(UserRepository userRepository,
+            @Value("${auth.email-filter.expected-insertions:100000}") long expectedInsertions,
+            @Value("${auth.email-filter.fpp:0.01}") double fpp,
+            @Value("${auth.email-filter.batch-size:1000}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+        this.fpp = fpp;
+        long n = Math.max(1, expectedInsertions);
+        // m = -n ln(p) / (ln 2)^2, k = m / n * ln 2
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = Math.max(64, (m + 63) / 64 * 64);
+        this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (this.numBits / 64));
+
+        Gauge.builder("auth.email.filter.memory", this, EmailBloomFilter::getMemoryBytes)
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("auth.email.filter.fpp.configured", this, f -> f.fpp).register(meterRegistry);
+        Gauge.builder("auth.email.filter.fpp.estimated", this, EmailBloomFilter::getEstimatedFpp)
+                .register(meterRegistry);
+        Gauge.builder("auth.email.filter.size", this.inserted, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("auth.email.filter.checks", this.negatives, AtomicLong::get)
+                .tag("result", "negative").register(meterRegistry);
+        FunctionCounter.builder("auth.email.filter.checks", this.positives, AtomicLong::get)
+                .tag("result", "positive").register(meterRegistry);
+        FunctionCounter.builder("auth.email.filter.false.positives", this.falsePositives, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    // đọc email theo từng lô (keyset theo id), không nạp cả bảng users vào bộ nhớ
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long afterId = 0;
+        while (true) {
+            List<UserEmail> batch = this.userRepository.findEmailsAfter(afterId, PageRequest.of(0, this.batchSize));
+            for (UserEmail row : batch) {
+                this.add(row.email());
+                afterId = row.id();
+            }
+            if (batch.size() < this.batchSize) {
+                break;
+            }
+        }
+        this.ready = true;
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    public void add(String email) {
+        if (email == null) {
+            return;
+        }
+        long[] h = hash(email);
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(h[0] + i * h[1], this.numBits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old;
+            do {
+                old = this.bits.get(word);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!this.bits.compareAndSet(word, old, old | mask));
+        }
+        this.inserted.incrementAndGet();
+    }
+
+    // chưa build xong thì luôn trả true để caller hỏi DB
+    public boolean mightContain(String email) {
+        if (!this.ready || email == null) {
+            return true;
+        }
+        long[] h = hash(email);
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(h[0] + i * h[1], this.numBits);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                this.negatives.incrementAndGet();
+                return false;
+            }
+        }
+        this.positives.incrementAndGet();
+        return true;
+    }
+
+    public void recordFalsePositive() {
+        this.falsePositives.incrementAndGet();
+    }
+
+    public long getMemoryBytes() {
+        return this.numBits / 8;
+    }
+
+    // (1 - e^(-k n / m))^k với n = số email đã thêm
+    public double getEstimatedFpp() {
+        return Math.pow(1 - Math.exp(-(double) this.numHashes * this.inserted.get() / this.numBits), this.numHashes);
+    }
+
+    // hai hash 64-bit độc lập (FNV-1a và biến thể có seed), băm kép h1 + i * h2
+    private static long[] hash(String email) {
+        byte[] data = email.trim().toLowerCase().getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x9e3779b97f4a7c15L;
+        for (byte b : data) {
+            h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+            h2 = (h2 ^ (b & 0xff)) * 0xff51afd7ed558ccdL;
+        }
+        h1 = mix(h1);
+        h2 = mix(h2) | 1;
+        return new long[] { h1, h2 };
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
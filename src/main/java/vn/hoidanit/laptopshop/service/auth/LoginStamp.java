@@ -0,0 +1,5 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+// phần của LoginUserDTO có thể bị node khác đổi: so lại khi trúng cache
+public record LoginStamp(String password, String roleName, int cartSum) {
+}
@@ -0,0 +1,130 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
+
+/**
+ * Cache ngắn hạn theo email cho luồng đăng nhập. CustomUserDetailsService nạp
+ * vào, CustomSuccessHandler đọc lại trong cùng request bằng peek, entry được
+ * giữ tới hết ttl. Khi trúng cache, {@link LoginStamp} (mật khẩu, role, số
+ * lượng giỏ hàng) được đọc lại từ DB để thấy thay đổi từ node khác; mật khẩu
+ * hoặc role khác thì nạp lại cả user. Email không tồn tại thì không cache, sai
+ * mật khẩu thì bỏ entry.
+ */
+@Component
+public class LoginUserCache {
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    public LoginUserCache(
+            @Value("${auth.user-cache.ttl:30s}") Duration ttl,
+            @Value("${auth.user-cache.max-size:10000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+
+        FunctionCounter.builder("auth.user.cache.requests", this.hits, AtomicLong::get)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("auth.user.cache.requests", this.misses, AtomicLong::get)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("auth.user.cache.requests", this.stale, AtomicLong::get)
+                .tag("result", "stale").register(meterRegistry);
+        Gauge.builder("auth.user.cache.size", this.entries, Map::size).register(meterRegistry);
+    }
+
+    public LoginUserDTO get(String email, Function<String, LoginUserDTO> loader,
+            Function<String, LoginStamp> stamper) {
+        String key = key(email);
+        long now = System.nanoTime();
+        Entry entry = this.entries.get(key);
+        if (entry != null && now - entry.loadedAt < this.ttlNanos) {
+            LoginStamp stamp = stamper.apply(email);
+            if (stamp == null) {
+                // user bị xóa ở node khác
+                this.entries.remove(key, entry);
+                return null;
+            }
+            LoginUserDTO cached = entry.user;
+            if (Objects.equals(stamp.password(), cached.getPassword())
+                    && Objects.equals(stamp.roleName(), cached.getRoleName())) {
+                this.hits.incrementAndGet();
+                if (stamp.cartSum() == cached.getCartSum()) {
+                    return cached;
+                }
+                LoginUserDTO updated = new LoginUserDTO(cached.getId(), cached.getEmail(), cached.getPassword(),
+                        cached.getRoleName(), cached.getFullName(), cached.getAvatar(), stamp.cartSum());
+                this.entries.replace(key, entry, new Entry(updated, entry.loadedAt));
+                return updated;
+            }
+            this.stale.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+
+        LoginUserDTO user = loader.apply(email);
+        if (user == null) {
+            this.entries.remove(key);
+            return null;
+        }
+        if (this.entries.size() >= this.maxSize) {
+            this.purgeExpired(now);
+        }
+        if (this.entries.size() < this.maxSize) {
+            this.entries.put(key, new Entry(user, now));
+        }
+        return user;
+    }
+
+    // entry vừa nạp trong cùng request đăng nhập, không kiểm tra lại DB
+    public LoginUserDTO peek(String email) {
+        Entry entry = this.entries.get(key(email));
+        return entry != null && System.nanoTime() - entry.loadedAt < this.ttlNanos ? entry.user : null;
+    }
+
+    // đăng nhập sai mật khẩu: không giữ entry vừa nạp cho người đoán mật khẩu
+    @EventListener
+    public void onBadCredentials(AuthenticationFailureBadCredentialsEvent event) {
+        this.evict(event.getAuthentication().getName());
+    }
+
+    public void evict(String email) {
+        if (email != null) {
+            this.entries.remove(key(email));
+        }
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().loadedAt >= this.ttlNanos) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private record Entry(LoginUserDTO user, long loadedAt) {
+    }
+}
@@ -0,0 +1,12 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// pool băm mật khẩu đã đầy hoặc chờ quá lâu: trả 503 thay vì giữ request thread
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,98 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Executor riêng cho BCrypt: số thread = số core, hàng đợi có giới hạn, đầy
+ * thì từ chối ngay. Một đợt đăng nhập dồn dập chỉ chiếm các thread này, các
+ * trang nhẹ vẫn còn thread Tomcat để phục vụ.
+ */
+@Component
+public class PasswordHashingPool {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+    private final Timer waitTimer;
+    private final Counter rejected;
+    private final MeterRegistry meterRegistry;
+
+    public PasswordHashingPool(
+            @Value("${password.hash.threads:0}") int threads,
+            @Value("${password.hash.queue-capacity:64}") int queueCapacity,
+            @Value("${password.hash.timeout:5s}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutNanos = timeout.toNanos();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("password.hash.queue.depth", this.executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hash.active", this.executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("password.hash.wait").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    // operation: "encode" hoặc "matches", dùng làm tag cho timer
+    public <T> T call(String operation, Callable<T> task) {
+        Timer hashTimer = Timer.builder("password.hash.duration").tag("operation", operation)
+                .register(this.meterRegistry);
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = this.executor.submit(() -> {
+                this.waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            this.rejected.increment();
+            throw new PasswordHashingBusyException("password hashing queue is full", e);
+        }
+
+        try {
+            return future.get(this.timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            this.rejected.increment();
+            throw new PasswordHashingBusyException("password hashing timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
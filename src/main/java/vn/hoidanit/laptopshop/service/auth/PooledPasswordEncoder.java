@@ -0,0 +1,39 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Chạy encode / matches của encoder bên trong trên PasswordHashingPool.
+ * upgradeEncoding chỉ đọc prefix / cost của hash nên chạy ngay trên thread
+ * gọi.
+ */
+public class PooledPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final PasswordHashingPool pool;
+
+    public PooledPasswordEncoder(PasswordEncoder delegate, PasswordHashingPool pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return this.pool.call("encode", () -> this.delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        try {
+            return this.pool.call("matches", () -> this.delegate.matches(rawPassword, encodedPassword));
+        } catch (PasswordHashingBusyException e) {
+            // trong luồng đăng nhập: về /login?error thay vì lỗi 500
+            throw new InternalAuthenticationServiceException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return this.delegate.upgradeEncoding(encodedPassword);
+    }
+}
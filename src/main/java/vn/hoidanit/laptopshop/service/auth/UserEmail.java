@@ -0,0 +1,4 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+public record UserEmail(long id, String email) {
+}
@@ -0,0 +1,35 @@
+package vn.hoidanit.laptopshop.service.auth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * ddl-auto=update bỏ qua uk_users_email khi bảng users đã có email trùng, và
+ * khác với giỏ hàng, hai tài khoản trùng email không gộp tự động được. Khi
+ * khởi động chỉ báo lỗi kèm số email trùng để gộp bằng tay; trong lúc đó đăng
+ * ký chỉ còn dựa vào existsByEmail. Phụ thuộc EntityManagerFactory để chạy sau
+ * ddl-auto.
+ */
+@Component
+public class UserEmailKeyCheck {
+    private static final Logger log = LoggerFactory.getLogger(UserEmailKeyCheck.class);
+
+    private static final String HAS_KEY = "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = 'users' AND index_name = 'uk_users_email'";
+    private static final String DUPLICATE_EMAILS = "SELECT COUNT(*) FROM (SELECT email FROM users "
+            + "GROUP BY email HAVING COUNT(*) > 1) d";
+
+    public UserEmailKeyCheck(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        Long hasKey = jdbcTemplate.queryForObject(HAS_KEY, Long.class);
+        if (hasKey != null && hasKey > 0) {
+            return;
+        }
+        Long duplicates = jdbcTemplate.queryForObject(DUPLICATE_EMAILS, Long.class);
+        log.error("unique key uk_users_email missing on users ({} duplicated emails), "
+                + "merge those accounts by hand; registration relies on existsByEmail until then", duplicates);
+    }
+}
@@ -0,0 +1,496 @@
+package vn.hoidanit.laptopshop.service.cart;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpSession;
+import vn.hoidanit.laptopshop.service.catalog.CatalogIndex;
+
+/**
+ * Giỏ hàng write-behind: mỗi lần thêm sản phẩm chỉ ghi một record vào
+ * CartJournal và cập nhật trạng thái trong bộ nhớ; bảng carts / cart_detail
+ * được cập nhật theo lô mỗi cart.flush.interval. Các luồng đọc giỏ hàng từ DB
+ * (trang giỏ hàng, đặt hàng, xóa dòng) gọi flush(userId) trước.
+ * <p>
+ * Khởi động lại sau crash: replay journal từ committedSeq rồi flush. Seq cuối
+ * của mỗi lô được ghi vào cart_journal_state trong cùng transaction với lô,
+ * nên record đã vào DB nhưng journal chưa kịp commit sẽ bị bỏ qua khi replay.
+ * <p>
+ * Lô lỗi (vd. user đã bị xóa) được ghi lại từng user sau một savepoint riêng
+ * trong cùng transaction: user lỗi không kéo cả lô rollback. Dòng của user lỗi
+ * được ghi lại vào journal và thử ở lần flush sau; lỗi quá
+ * cart.flush.max-attempts lần thì bị loại (ghi log error + cart.flush.dropped).
+ * Phụ thuộc EntityManagerFactory để chạy sau khi ddl-auto đã tạo bảng.
+ */
+@Component
+public class CartEngine {
+    private static final Logger log = LoggerFactory.getLogger(CartEngine.class);
+
+    private static final String CREATE_CART = "INSERT INTO carts (user_id, sum) VALUES (?, 0) "
+            + "ON DUPLICATE KEY UPDATE user_id = user_id";
+    private static final String UPSERT_LINE = "INSERT INTO cart_detail (cart_id, product_id, price, quantity) "
+            + "SELECT c.id, p.id, p.price, ? FROM carts c JOIN products p ON p.id = ? WHERE c.user_id = ? "
+            + "ON DUPLICATE KEY UPDATE quantity = cart_detail.quantity + ?";
+    private static final String ADD_SUM = "UPDATE carts SET sum = sum + ? WHERE user_id = ?";
+    private static final String LOAD_SEQ = "SELECT last_seq FROM cart_journal_state WHERE node_id = ?";
+    private static final String SAVE_SEQ = "INSERT INTO cart_journal_state (node_id, last_seq) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq))";
+    private static final String LOAD_PRODUCTS = "SELECT cd.product_id FROM cart_detail cd "
+            + "JOIN carts c ON c.id = cd.cart_id WHERE c.user_id = ?";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogIndex catalogIndex;
+    private final CartJournal journal;
+    private final String nodeId;
+    private final long flushIntervalMillis;
+    private final long idleEvictionNanos;
+    private final int maxAttempts;
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    // read: thêm sản phẩm (ghi journal + trạng thái); write: chụp và rút pending khi flush
+    private final ReentrantReadWriteLock mutationLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // user id -> số lần flush liên tiếp lỗi (chỉ đọc / ghi khi giữ flushLock)
+    private final Map<Long, Integer> failedFlushes = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter mutations;
+    private final Counter journalFull;
+    private final Counter dropped;
+    private final Timer flushTimer;
+
+    public CartEngine(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            CatalogIndex catalogIndex, EntityManagerFactory entityManagerFactory,
+            @Value("${cart.write-behind.enabled:true}") boolean enabled,
+            @Value("${cart.journal.path:data/cart.journal}") Path journalPath,
+            @Value("${cart.journal.size:16MB}") DataSize journalSize,
+            @Value("${cart.journal.force:false}") boolean forceJournal,
+            @Value("${cart.journal.node-id:${HOSTNAME:local}}") String nodeId,
+            @Value("${cart.flush.interval:500ms}") Duration flushInterval,
+            @Value("${cart.idle-eviction:30m}") Duration idleEviction,
+            @Value("${cart.flush.max-attempts:5}") int maxAttempts,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.jdbcTemplate = jdbcTemplate;
+        // flush luôn chạy ngoài transaction của người gọi (xem flushAll): lô commit trước khi journal commit
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.catalogIndex = catalogIndex;
+        this.nodeId = nodeId;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.idleEvictionNanos = idleEviction.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.journal = enabled ? new CartJournal(journalPath, (int) journalSize.toBytes(), forceJournal) : null;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cart-flush");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.mutations = Counter.builder("cart.engine.mutations").register(meterRegistry);
+        this.journalFull = Counter.builder("cart.journal.full").register(meterRegistry);
+        this.dropped = Counter.builder("cart.flush.dropped").register(meterRegistry);
+        this.flushTimer = Timer.builder("cart.flush").register(meterRegistry);
+        Gauge.builder("cart.engine.carts", this.carts, Map::size).register(meterRegistry);
+        Gauge.builder("cart.engine.pending.lines", this, CartEngine::pendingLines).register(meterRegistry);
+        Gauge.builder("cart.flush.lag", this, CartEngine::flushLagSeconds).baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("cart.journal.bytes", this, e -> e.journal == null ? 0 : e.journal.pendingBytes())
+                .baseUnit("bytes").register(meterRegistry);
+
+        if (this.journal != null) {
+            // replay trước khi nhận request; bỏ qua record mà lô flush trước crash đã ghi vào DB
+            List<Long> applied = this.jdbcTemplate.queryForList(LOAD_SEQ, Long.class, nodeId);
+            if (!applied.isEmpty()) {
+                this.journal.commit(applied.get(0));
+            }
+            int replayed = this.journal.replay((seq, userId, productId, quantity) -> this.carts
+                    .computeIfAbsent(userId, k -> new CartState()).addPending(productId, quantity));
+            if (replayed > 0) {
+                log.info("replayed {} cart journal records", replayed);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!this.enabled) {
+            return;
+        }
+        // record replay lỗi không chặn khởi động: dòng lỗi được thử lại rồi loại như lúc chạy
+        this.flushSafely();
+        this.scheduler.scheduleWithFixedDelay(this::flushSafely, this.flushIntervalMillis, this.flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        this.scheduler.shutdown();
+        if (this.enabled) {
+            try {
+                this.flushAll();
+            } finally {
+                this.journal.close();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // trả về sum mới (số sản phẩm khác nhau trong giỏ) và ghi vào session
+    public int add(long userId, long productId, long quantity, HttpSession session) {
+        Object current = session.getAttribute("sum");
+        int sum = current instanceof Integer i ? i : 0;
+        if (quantity <= 0 || (this.catalogIndex.isReady() && this.catalogIndex.getSnapshot().get(productId) == null)) {
+            return sum;
+        }
+
+        Integer updated = this.tryAdd(userId, productId, quantity);
+        if (updated == null) {
+            // journal đầy: flush để giải phóng rồi thử lại, vẫn đầy thì ghi thẳng xuống DB
+            this.journalFull.increment();
+            this.flushAll();
+            updated = this.tryAdd(userId, productId, quantity);
+        }
+        if (updated == null) {
+            this.transactionTemplate.executeWithoutResult(
+                    status -> this.write(List.of(new Line(userId, productId, quantity)), -1));
+            this.forget(userId);
+            updated = this.tryAdd(userId, productId, 0);
+        }
+        sum = updated == null ? sum : updated;
+        session.setAttribute("sum", sum);
+        return sum;
+    }
+
+    /**
+     * Ghi xuống DB mọi thay đổi đang chờ nếu user này có thay đổi chưa flush.
+     * Luôn lấy flushLock trước khi kiểm tra: lô đang chạy có thể đã rút pending
+     * của user nhưng chưa commit, khi đó phải chờ lô đó xong.
+     */
+    public void flush(long userId) {
+        if (!this.enabled) {
+            return;
+        }
+        this.flushLock.lock();
+        try {
+            CartState state = this.carts.get(userId);
+            if (state != null && state.hasPending()) {
+                this.flushAll();
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    // giỏ hàng vừa bị sửa trực tiếp trong DB (xóa dòng, đặt hàng): nạp lại danh sách sản phẩm lần sau
+    public void forget(long userId) {
+        CartState state = this.carts.get(userId);
+        if (state != null) {
+            state.resetProducts();
+        }
+    }
+
+    private Integer tryAdd(long userId, long productId, long quantity) {
+        this.mutationLock.readLock().lock();
+        try {
+            CartState state = this.carts.computeIfAbsent(userId, k -> new CartState());
+            state.ensureLoaded(() -> new HashSet<>(this.jdbcTemplate.queryForList(LOAD_PRODUCTS, Long.class, userId)));
+            if (quantity == 0) {
+                return state.sum();
+            }
+            if (this.journal.append(userId, productId, quantity) < 0) {
+                return null;
+            }
+            this.mutations.increment();
+            return state.addPending(productId, quantity);
+        } finally {
+            this.mutationLock.readLock().unlock();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            this.flushAll();
+        } catch (RuntimeException e) {
+            log.warn("cart flush failed, will retry", e);
+        }
+    }
+
+    public void flushAll() {
+        if (!this.enabled) {
+            return;
+        }
+        // trong transaction khác thì lô chỉ commit cùng transaction đó (journal đi trước DB)
+        // và request giữ hai connection: gọi flush trước khi mở transaction
+        Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+                "cart flush must run outside a transaction");
+        this.flushLock.lock();
+        try {
+            List<Line> lines = new ArrayList<>();
+            long seq;
+            this.mutationLock.writeLock().lock();
+            try {
+                seq = this.journal.lastSeq();
+                long now = System.nanoTime();
+                Iterator<Map.Entry<Long, CartState>> it = this.carts.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, CartState> entry = it.next();
+                    CartState state = entry.getValue();
+                    for (Map.Entry<Long, Long> pending : state.drain().entrySet()) {
+                        lines.add(new Line(entry.getKey(), pending.getKey(), pending.getValue()));
+                    }
+                    if (state.isIdle(now, this.idleEvictionNanos)) {
+                        it.remove();
+                    }
+                }
+            } finally {
+                this.mutationLock.writeLock().unlock();
+            }
+
+            if (!lines.isEmpty()) {
+                Map<Long, List<Line>> failed;
+                try {
+                    this.flushTimer.record(() -> this.transactionTemplate.executeWithoutResult(
+                            status -> this.write(lines, seq)));
+                    failed = Map.of();
+                } catch (RuntimeException e) {
+                    log.warn("cart flush batch failed, retrying user by user", e);
+                    try {
+                        failed = this.transactionTemplate.execute(status -> this.writeIsolated(lines, seq));
+                    } catch (RuntimeException retry) {
+                        // trả lại pending, journal chưa commit nên vẫn an toàn nếu crash
+                        this.requeue(lines);
+                        throw retry;
+                    }
+                }
+                if (!this.failedFlushes.isEmpty()) {
+                    for (Line line : lines) {
+                        if (!failed.containsKey(line.userId())) {
+                            this.failedFlushes.remove(line.userId());
+                        }
+                    }
+                }
+                for (Map.Entry<Long, List<Line>> entry : failed.entrySet()) {
+                    this.retryOrDrop(entry.getKey(), entry.getValue());
+                }
+            }
+            this.journal.commit(seq);
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    // ghi từng user sau một savepoint, trả về các dòng của user ghi lỗi (đã rollback về savepoint)
+    private Map<Long, List<Line>> writeIsolated(List<Line> lines, long seq) {
+        Map<Long, List<Line>> byUser = new LinkedHashMap<>();
+        for (Line line : lines) {
+            byUser.computeIfAbsent(line.userId(), k -> new ArrayList<>()).add(line);
+        }
+        Map<Long, List<Line>> failed = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<Line>> entry : byUser.entrySet()) {
+            Savepoint savepoint = this.jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+            try {
+                this.write(entry.getValue(), -1);
+                this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    connection.releaseSavepoint(savepoint);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    connection.rollback(savepoint);
+                    return null;
+                });
+                log.warn("cart flush failed for user {}", entry.getKey(), e);
+                failed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.jdbcTemplate.update(SAVE_SEQ, this.nodeId, seq);
+        return failed;
+    }
+
+    // dòng của user ghi lỗi: ghi lại vào journal (seq mới, sau lô vừa commit) để lần flush sau thử lại,
+    // lỗi quá maxAttempts lần liên tiếp thì loại hẳn
+    private void retryOrDrop(long userId, List<Line> lines) {
+        int attempts = this.failedFlushes.merge(userId, 1, Integer::sum);
+        if (attempts >= this.maxAttempts) {
+            this.failedFlushes.remove(userId);
+            this.dropped.increment(lines.size());
+            log.error("dropping {} cart lines of user {} after {} failed flushes: {}", lines.size(), userId,
+                    attempts, lines);
+            return;
+        }
+        this.mutationLock.readLock().lock();
+        try {
+            for (Line line : lines) {
+                if (this.journal.append(line.userId(), line.productId(), line.quantity()) < 0) {
+                    log.warn("cart journal full, retrying {} without journal record", line);
+                }
+            }
+            this.requeue(lines);
+        } finally {
+            this.mutationLock.readLock().unlock();
+        }
+    }
+
+    private void requeue(List<Line> lines) {
+        for (Line line : lines) {
+            this.carts.computeIfAbsent(line.userId(), k -> new CartState())
+                    .addPending(line.productId(), line.quantity());
+        }
+    }
+
+    // seq < 0: ghi thẳng, không qua journal
+    private void write(List<Line> lines, long seq) {
+        Set<Long> users = new LinkedHashSet<>();
+        for (Line line : lines) {
+            users.add(line.userId());
+        }
+        List<Object[]> cartArgs = new ArrayList<>(users.size());
+        for (Long userId : users) {
+            cartArgs.add(new Object[] { userId });
+        }
+        this.jdbcTemplate.batchUpdate(CREATE_CART, cartArgs);
+
+        List<Object[]> lineArgs = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            lineArgs.add(new Object[] { line.quantity(), line.productId(), line.userId(), line.quantity() });
+        }
+        int[] counts = this.jdbcTemplate.batchUpdate(UPSERT_LINE, lineArgs);
+
+        // 1 = dòng mới -> tăng sum của giỏ hàng
+        Map<Long, Integer> newLines = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 1) {
+                newLines.merge(lines.get(i).userId(), 1, Integer::sum);
+            }
+        }
+        List<Object[]> sumArgs = new ArrayList<>(newLines.size());
+        for (Map.Entry<Long, Integer> entry : newLines.entrySet()) {
+            sumArgs.add(new Object[] { entry.getValue(), entry.getKey() });
+        }
+        if (!sumArgs.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(ADD_SUM, sumArgs);
+        }
+        if (seq >= 0) {
+            this.jdbcTemplate.update(SAVE_SEQ, this.nodeId, seq);
+        }
+    }
+
+    private double pendingLines() {
+        long total = 0;
+        for (CartState state : this.carts.values()) {
+            total += state.pendingSize();
+        }
+        return total;
+    }
+
+    private double flushLagSeconds() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (CartState state : this.carts.values()) {
+            oldest = Math.max(oldest, state.pendingAge(now));
+        }
+        return oldest / 1e9;
+    }
+
+    private record Line(long userId, long productId, long quantity) {
+    }
+
+    private static final class CartState {
+        private final Map<Long, Long> pending = new LinkedHashMap<>();
+        // id sản phẩm đang có trong giỏ (DB + pending), null = chưa nạp
+        private Set<Long> products;
+        private long firstPendingAt;
+        private long lastTouched = System.nanoTime();
+
+        synchronized void ensureLoaded(java.util.function.Supplier<Set<Long>> loader) {
+            if (this.products == null) {
+                this.products = loader.get();
+                this.products.addAll(this.pending.keySet());
+            }
+            this.lastTouched = System.nanoTime();
+        }
+
+        synchronized int addPending(long productId, long quantity) {
+            if (this.pending.isEmpty()) {
+                this.firstPendingAt = System.nanoTime();
+            }
+            this.pending.merge(productId, quantity, Long::sum);
+            if (this.products != null) {
+                this.products.add(productId);
+            }
+            return this.sum();
+        }
+
+        synchronized int sum() {
+            return this.products == null ? 0 : this.products.size();
+        }
+
+        synchronized boolean hasPending() {
+            return !this.pending.isEmpty();
+        }
+
+        synchronized int pendingSize() {
+            return this.pending.size();
+        }
+
+        synchronized long pendingAge(long now) {
+            return this.pending.isEmpty() ? 0 : now - this.firstPendingAt;
+        }
+
+        synchronized Map<Long, Long> drain() {
+            Map<Long, Long> drained = new LinkedHashMap<>(this.pending);
+            this.pending.clear();
+            return drained;
+        }
+
+        synchronized void resetProducts() {
+            this.products = null;
+        }
+
+        synchronized boolean isIdle(long now, long idleNanos) {
+            return this.pending.isEmpty() && now - this.lastTouched > idleNanos;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package vn.hoidanit.laptopshop.service.cart;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Journal vòng (ring buffer) trên file memory-mapped, ghi mỗi thao tác giỏ
+ * hàng trước khi nó được flush xuống DB.
+ *
+ * <pre>
+ * header : long committedSeq | long committedOffset
+ * record : int MAGIC | int 0 | long seq | long userId | long productId | long quantity
+ * </pre>
+ *
+ * Mỗi record có số thứ tự seq tăng dần. Record có seq <= committedSeq đã nằm
+ * trong DB; committedOffset là vị trí record kế tiếp. Hết file thì ghi vòng về
+ * ngay sau header, đè lên vùng đã commit, nên journal chỉ đầy khi phần chưa
+ * flush vượt dung lượng. Replay dừng ở record đầu tiên có seq không liên tiếp
+ * (record cũ của vòng trước hoặc record ghi dở).
+ */
+public class CartJournal implements AutoCloseable {
+    private static final int MAGIC = 0x43525432; // "CRT2"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+
+    public interface RecordConsumer {
+        void accept(long seq, long userId, long productId, long quantity);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean force;
+    // vùng ghi vòng: [HEADER_SIZE, end), end chia hết cho RECORD_SIZE
+    private final int end;
+    private long committedSeq;
+    private int committedOffset;
+    private long lastSeq;
+    private int position;
+
+    public CartJournal(Path path, int size, boolean force) {
+        if (size < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("cart journal size too small: " + size);
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open cart journal " + path, e);
+        }
+        this.force = force;
+        this.end = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+        this.committedSeq = Math.max(0, this.buffer.getLong(0));
+        long offset = this.buffer.getLong(8);
+        boolean valid = offset >= HEADER_SIZE && offset < this.end && (offset - HEADER_SIZE) % RECORD_SIZE == 0;
+        this.committedOffset = valid ? (int) offset : HEADER_SIZE;
+        if (!this.isRecord(this.committedOffset, this.committedSeq + 1)) {
+            // header ghi dở khi crash: tìm record committedSeq + 1 trong cả vòng
+            for (int pos = HEADER_SIZE; pos < this.end; pos += RECORD_SIZE) {
+                if (this.isRecord(pos, this.committedSeq + 1)) {
+                    this.committedOffset = pos;
+                    break;
+                }
+            }
+        }
+
+        // tìm record cuối cùng liên tiếp sau committedSeq
+        this.lastSeq = this.committedSeq;
+        this.position = this.committedOffset;
+        while (this.pending() < this.slots() && this.isRecord(this.position, this.lastSeq + 1)) {
+            this.lastSeq++;
+            this.position = this.next(this.position);
+        }
+    }
+
+    // đọc lại các record chưa commit theo thứ tự seq
+    public synchronized int replay(RecordConsumer consumer) {
+        int pos = this.committedOffset;
+        for (long seq = this.committedSeq + 1; seq <= this.lastSeq; seq++) {
+            consumer.accept(seq, this.buffer.getLong(pos + 16), this.buffer.getLong(pos + 24),
+                    this.buffer.getLong(pos + 32));
+            pos = this.next(pos);
+        }
+        return (int) (this.lastSeq - this.committedSeq);
+    }
+
+    // trả về seq của record, -1 nếu journal đã đầy
+    public synchronized long append(long userId, long productId, long quantity) {
+        if (this.pending() >= this.slots()) {
+            return -1;
+        }
+        int pos = this.position;
+        long seq = this.lastSeq + 1;
+        this.buffer.putInt(pos + 4, 0);
+        this.buffer.putLong(pos + 8, seq);
+        this.buffer.putLong(pos + 16, userId);
+        this.buffer.putLong(pos + 24, productId);
+        this.buffer.putLong(pos + 32, quantity);
+        // MAGIC ghi cuối: record ghi dở khi crash sẽ không được replay
+        this.buffer.putInt(pos, MAGIC);
+        this.lastSeq = seq;
+        this.position = this.next(pos);
+        if (this.force) {
+            this.buffer.force();
+        }
+        return seq;
+    }
+
+    // seq của record mới nhất đã ghi
+    public synchronized long lastSeq() {
+        return this.lastSeq;
+    }
+
+    public synchronized long committedSeq() {
+        return this.committedSeq;
+    }
+
+    /**
+     * Các record có seq <= seq đã nằm trong DB. seq lớn hơn lastSeq (file
+     * journal mới trong khi DB đã ghi tới seq đó) thì nhảy số thứ tự lên để
+     * record mới không bị coi là đã áp dụng.
+     */
+    public synchronized void commit(long seq) {
+        if (seq <= this.committedSeq) {
+            return;
+        }
+        if (seq >= this.lastSeq) {
+            this.committedOffset = this.position;
+            this.lastSeq = seq;
+        } else {
+            long skipped = seq - this.committedSeq;
+            this.committedOffset = (int) (HEADER_SIZE
+                    + (this.committedOffset - HEADER_SIZE + skipped * RECORD_SIZE) % (this.end - HEADER_SIZE));
+        }
+        this.committedSeq = seq;
+        // crash giữa hai lệnh: lúc mở lại sẽ tìm record committedSeq + 1 trong cả vòng
+        this.buffer.putLong(8, this.committedOffset);
+        this.buffer.putLong(0, seq);
+        if (this.force) {
+            this.buffer.force();
+        }
+    }
+
+    // số byte record chưa commit
+    public synchronized long pendingBytes() {
+        return this.pending() * RECORD_SIZE;
+    }
+
+    public synchronized int capacity() {
+        return this.slots() * RECORD_SIZE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    private long pending() {
+        return this.lastSeq - this.committedSeq;
+    }
+
+    private int slots() {
+        return (this.end - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    private int next(int pos) {
+        int next = pos + RECORD_SIZE;
+        return next >= this.end ? HEADER_SIZE : next;
+    }
+
+    private boolean isRecord(int pos, long seq) {
+        return this.buffer.getInt(pos) == MAGIC && this.buffer.getLong(pos + 8) == seq;
+    }
+}
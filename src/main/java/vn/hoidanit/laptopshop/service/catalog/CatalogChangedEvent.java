@@ -0,0 +1,5 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+// phát sau khi CatalogIndex build lại vì stamp trong DB đổi (node này hoặc node khác ghi)
+public record CatalogChangedEvent(CatalogStamp stamp) {
+}
@@ -0,0 +1,5 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+// chỉ giữ các cột dùng để lọc, không load detailDesc
+public record CatalogEntry(long id, double price, String factory, String target) {
+}
@@ -0,0 +1,154 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import vn.hoidanit.laptopshop.domain.dto.ProductCriteriaDTO;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+
+/**
+ * Bộ lọc sản phẩm trong bộ nhớ cho trang /products. Snapshot được build lúc
+ * khởi động và build lại khi {@link CatalogStamp} trong DB đổi: ngay sau khi
+ * node này thêm / sửa / xóa sản phẩm, và mỗi catalog.refresh-interval cho thay
+ * đổi từ node khác.
+ */
+@Service
+public class CatalogIndex {
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndex.class);
+
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long refreshIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile CatalogStamp stamp = CatalogStamp.NONE;
+    private volatile boolean ready = false;
+
+    public CatalogIndex(ProductRepository productRepository, ApplicationEventPublisher eventPublisher,
+            @Value("${catalog.refresh-interval:30s}") Duration refreshInterval) {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.refresh();
+        this.scheduler.scheduleWithFixedDelay(this::refreshSafely, this.refreshIntervalMillis,
+                this.refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    /**
+     * Một query COUNT / MAX trên index, chỉ đọc lại toàn bộ catalog khi stamp
+     * khác lần build trước. Stamp được đọc trước các dòng: có ghi xen giữa thì
+     * lần refresh sau thấy stamp mới và build lại. Các index khác đọc theo
+     * {@link CatalogChangedEvent}.
+     */
+    public synchronized void refresh() {
+        CatalogStamp current = this.productRepository.findCatalogStamp();
+        if (this.ready && current.equals(this.stamp)) {
+            return;
+        }
+        this.snapshot = new CatalogSnapshot(this.productRepository.findAllCatalogEntries());
+        this.stamp = current;
+        this.ready = true;
+        this.eventPublisher.publishEvent(new CatalogChangedEvent(current));
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    // stamp của DB lúc build snapshot hiện tại, giống nhau trên mọi node đã refresh
+    public CatalogStamp getStamp() {
+        return this.stamp;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    public CatalogPage queryWithFacets(ProductCriteriaDTO criteria, Pageable pageable) {
+        CatalogSnapshot current = this.snapshot;
+        List<String> factories = values(criteria.getFactory());
+        List<String> targets = values(criteria.getTarget());
+        List<String> prices = values(criteria.getPrice());
+        CatalogPage page = current.page(
+                current.filter(factories, targets, prices),
+                CatalogSort.fromPageable(pageable),
+                (int) pageable.getOffset(),
+                pageable.getPageSize());
+        return page.withFacets(current.facetCounts(factories, targets, prices));
+    }
+
+    public FacetCounts facetCounts(ProductCriteriaDTO criteria) {
+        return this.snapshot.facetCounts(values(criteria.getFactory()), values(criteria.getTarget()),
+                values(criteria.getPrice()));
+    }
+
+    // dùng để kết hợp bộ lọc với kết quả tìm kiếm
+    public LongPredicate matcher(ProductCriteriaDTO criteria) {
+        CatalogSnapshot current = this.snapshot;
+        BitSet bits = current.filter(values(criteria.getFactory()), values(criteria.getTarget()),
+                values(criteria.getPrice()));
+        return id -> {
+            int pos = current.positionOf(id);
+            return pos >= 0 && bits.get(pos);
+        };
+    }
+
+    public List<Long> sortByPrice(List<Long> ids, CatalogSort sort) {
+        if (sort == CatalogSort.NONE) {
+            return ids;
+        }
+        CatalogSnapshot current = this.snapshot;
+        Comparator<Long> byPrice = Comparator.comparingDouble(id -> {
+            CatalogEntry entry = current.get(id);
+            return entry == null ? 0 : entry.price();
+        });
+        List<Long> sorted = new ArrayList<>(ids);
+        sorted.sort(sort == CatalogSort.PRICE_ASC ? byPrice : byPrice.reversed());
+        return sorted;
+    }
+
+    private void refreshSafely() {
+        try {
+            this.refresh();
+        } catch (RuntimeException e) {
+            log.warn("catalog refresh failed, will retry", e);
+        }
+    }
+
+    static List<String> values(Optional<List<String>> optional) {
+        return optional != null && optional.isPresent() ? optional.get() : null;
+    }
+}
@@ -0,0 +1,13 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.util.List;
+
+public record CatalogPage(List<Long> ids, long total, FacetCounts facets) {
+    public CatalogPage(List<Long> ids, long total) {
+        this(ids, total, FacetCounts.EMPTY);
+    }
+
+    public CatalogPage withFacets(FacetCounts facets) {
+        return new CatalogPage(this.ids, this.total, facets);
+    }
+}
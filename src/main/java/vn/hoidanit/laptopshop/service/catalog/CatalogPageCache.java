@@ -0,0 +1,103 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cache LRU các trang id sản phẩm của /products, giới hạn theo số entry và
+ * thời gian sống.
+ */
+@Component
+public class CatalogPageCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<CatalogQueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CatalogPageCache(
+            @Value("${catalog.page-cache.max-size:1000}") int maxSize,
+            @Value("${catalog.page-cache.ttl:5m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+
+        FunctionCounter.builder("catalog.page.cache.requests", this.hits, AtomicLong::get)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("catalog.page.cache.requests", this.misses, AtomicLong::get)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("catalog.page.cache.evictions", this.evictions, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("catalog.page.cache.size", this, CatalogPageCache::size).register(meterRegistry);
+    }
+
+    public CatalogPage get(CatalogQueryKey key, Supplier<CatalogPage> loader) {
+        long now = System.nanoTime();
+        synchronized (this.entries) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt < this.ttlNanos) {
+                    this.hits.incrementAndGet();
+                    return entry.page;
+                }
+                this.entries.remove(key);
+                this.evictions.incrementAndGet();
+            }
+        }
+
+        this.misses.incrementAndGet();
+        CatalogPage page = loader.get();
+        synchronized (this.entries) {
+            this.entries.put(key, new Entry(page, now));
+            Iterator<Map.Entry<CatalogQueryKey, Entry>> eldest = this.entries.entrySet().iterator();
+            while (this.entries.size() > this.maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+        return page;
+    }
+
+    public void invalidateAll() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    private static final class Entry {
+        private final CatalogPage page;
+        private final long createdAt;
+
+        Entry(CatalogPage page, long createdAt) {
+            this.page = page;
+            this.createdAt = createdAt;
+        }
+    }
+}
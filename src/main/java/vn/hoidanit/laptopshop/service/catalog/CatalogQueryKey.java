@@ -0,0 +1,44 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import org.springframework.data.domain.Pageable;
+
+import vn.hoidanit.laptopshop.domain.dto.ProductCriteriaDTO;
+
+/**
+ * Khóa cache đã chuẩn hóa: danh sách lọc được sắp xếp và bỏ trùng, nên
+ * ?factory=DELL,APPLE và ?factory=apple,dell dùng chung một entry. Có kèm
+ * {@link CatalogStamp} đọc từ DB: sản phẩm đổi ở bất kỳ node nào thì khóa cũ
+ * không bao giờ trúng nữa.
+ */
+public record CatalogQueryKey(List<String> factory, List<String> target, List<String> price, CatalogSort sort,
+        int page, int size, CatalogStamp stamp) {
+
+    public static CatalogQueryKey of(ProductCriteriaDTO criteria, Pageable pageable, CatalogStamp stamp) {
+        return new CatalogQueryKey(
+                canonical(criteria.getFactory(), true),
+                canonical(criteria.getTarget(), true),
+                canonical(criteria.getPrice(), false),
+                CatalogSort.fromPageable(pageable),
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                stamp);
+    }
+
+    private static List<String> canonical(Optional<List<String>> optional, boolean ignoreCase) {
+        List<String> values = CatalogIndex.values(optional);
+        if (values == null) {
+            return null;
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String value : values) {
+            if (value != null) {
+                sorted.add(ignoreCase ? CatalogSnapshot.key(value) : value);
+            }
+        }
+        return List.copyOf(sorted);
+    }
+}
@@ -0,0 +1,213 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ảnh chụp bất biến của catalog: mỗi factory / target / mức giá là một bitmap
+ * trên vị trí sản phẩm (sắp theo id tăng dần). Không bao giờ bị sửa sau khi
+ * tạo, nên có thể đọc từ nhiều thread mà không cần lock.
+ */
+public final class CatalogSnapshot {
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(Collections.emptyList());
+
+    private final CatalogEntry[] entries;
+    private final BitSet all;
+    private final Map<String, BitSet> byFactory = new HashMap<>();
+    private final Map<String, BitSet> byTarget = new HashMap<>();
+    private final Map<PriceBucket, BitSet> byPrice = new EnumMap<>(PriceBucket.class);
+    // vị trí sản phẩm sắp theo (price, id) tăng dần
+    private final int[] priceAsc;
+
+    public CatalogSnapshot(Collection<CatalogEntry> source) {
+        this.entries = source.toArray(new CatalogEntry[0]);
+        Arrays.sort(this.entries, Comparator.comparingLong(CatalogEntry::id));
+
+        int n = this.entries.length;
+        this.all = new BitSet(n);
+        this.all.set(0, n);
+        for (PriceBucket bucket : PriceBucket.values()) {
+            this.byPrice.put(bucket, new BitSet(n));
+        }
+
+        for (int i = 0; i < n; i++) {
+            CatalogEntry entry = this.entries[i];
+            if (entry.factory() != null) {
+                this.byFactory.computeIfAbsent(key(entry.factory()), k -> new BitSet(n)).set(i);
+            }
+            if (entry.target() != null) {
+                this.byTarget.computeIfAbsent(key(entry.target()), k -> new BitSet(n)).set(i);
+            }
+            for (PriceBucket bucket : PriceBucket.values()) {
+                if (bucket.contains(entry.price())) {
+                    this.byPrice.get(bucket).set(i);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> this.entries[i].price())
+                .thenComparingLong(i -> this.entries[i].id()));
+        this.priceAsc = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.priceAsc[i] = order[i];
+        }
+    }
+
+    // MySQL so sánh chuỗi không phân biệt hoa thường, giữ nguyên hành vi đó
+    static String key(String value) {
+        return value.toUpperCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return this.entries.length;
+    }
+
+    public CatalogEntry get(long id) {
+        int pos = this.positionOf(id);
+        return pos < 0 ? null : this.entries[pos];
+    }
+
+    int positionOf(long id) {
+        int lo = 0;
+        int hi = this.entries.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = this.entries[mid].id();
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hợp (OR) các giá trị trong cùng một nhóm, giao (AND) giữa các nhóm. Nhóm
+     * nào bằng null thì không lọc.
+     */
+    public BitSet filter(List<String> factories, List<String> targets, List<String> prices) {
+        BitSet result = (BitSet) this.all.clone();
+        if (factories != null) {
+            result.and(unionOf(this.byFactory, factories));
+        }
+        if (targets != null) {
+            result.and(unionOf(this.byTarget, targets));
+        }
+        if (prices != null) {
+            BitSet priceBits = this.unionOfPrices(prices);
+            if (priceBits != null) {
+                result.and(priceBits);
+            }
+        }
+        return result;
+    }
+
+    private BitSet unionOf(Map<String, BitSet> index, List<String> values) {
+        BitSet union = new BitSet(this.entries.length);
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            BitSet bits = index.get(key(value));
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+
+    // trả về null nếu không có mức giá hợp lệ nào (giống buildPriceSpecification)
+    private BitSet unionOfPrices(List<String> prices) {
+        BitSet union = null;
+        for (String slug : prices) {
+            PriceBucket bucket = PriceBucket.fromSlug(slug);
+            if (bucket == null) {
+                continue;
+            }
+            if (union == null) {
+                union = new BitSet(this.entries.length);
+            }
+            union.or(this.byPrice.get(bucket));
+        }
+        return union;
+    }
+
+    public FacetCounts facetCounts(List<String> factories, List<String> targets, List<String> prices) {
+        BitSet scratch = new BitSet(this.entries.length);
+        return new FacetCounts(
+                countEach(this.byFactory, this.filter(null, targets, prices), scratch),
+                countEach(this.byTarget, this.filter(factories, null, prices), scratch),
+                this.countPrices(this.filter(factories, targets, null), scratch));
+    }
+
+    private static Map<String, Long> countEach(Map<String, BitSet> index, BitSet base, BitSet scratch) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, BitSet> entry : index.entrySet()) {
+            counts.put(entry.getKey(), intersectCount(entry.getValue(), base, scratch));
+        }
+        return counts;
+    }
+
+    private Map<String, Long> countPrices(BitSet base, BitSet scratch) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (PriceBucket bucket : PriceBucket.values()) {
+            counts.put(bucket.getSlug(), intersectCount(this.byPrice.get(bucket), base, scratch));
+        }
+        return counts;
+    }
+
+    private static long intersectCount(BitSet bits, BitSet base, BitSet scratch) {
+        scratch.clear();
+        scratch.or(bits);
+        scratch.and(base);
+        return scratch.cardinality();
+    }
+
+    public CatalogPage page(BitSet matches, CatalogSort sort, int offset, int size) {
+        long total = matches.cardinality();
+        List<Long> ids = new ArrayList<>(Math.max(0, Math.min(size, (int) total - offset)));
+        int skipped = 0;
+        switch (sort) {
+            case PRICE_ASC:
+                for (int i = 0; i < this.priceAsc.length && ids.size() < size; i++) {
+                    int pos = this.priceAsc[i];
+                    if (matches.get(pos) && skipped++ >= offset) {
+                        ids.add(this.entries[pos].id());
+                    }
+                }
+                break;
+            case PRICE_DESC:
+                for (int i = this.priceAsc.length - 1; i >= 0 && ids.size() < size; i--) {
+                    int pos = this.priceAsc[i];
+                    if (matches.get(pos) && skipped++ >= offset) {
+                        ids.add(this.entries[pos].id());
+                    }
+                }
+                break;
+            default:
+                for (int pos = matches.nextSetBit(0); pos >= 0 && ids.size() < size; pos = matches.nextSetBit(pos + 1)) {
+                    if (skipped++ >= offset) {
+                        ids.add(this.entries[pos].id());
+                    }
+                }
+        }
+        return new CatalogPage(ids, total);
+    }
+}
@@ -0,0 +1,46 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import vn.hoidanit.laptopshop.domain.Product_;
+
+public enum CatalogSort {
+    NONE, PRICE_ASC, PRICE_DESC;
+
+    public static CatalogSort fromSlug(Optional<String> slug) {
+        if (slug == null || slug.isEmpty()) {
+            return NONE;
+        }
+        switch (slug.get()) {
+            case "gia-tang-dan":
+                return PRICE_ASC;
+            case "gia-giam-dan":
+                return PRICE_DESC;
+            default:
+                return NONE;
+        }
+    }
+
+    // thứ tự ổn định cho keyset: luôn có id để phân biệt các sản phẩm cùng giá
+    public Sort toKeysetSort() {
+        switch (this) {
+            case PRICE_ASC:
+                return Sort.by(Product_.PRICE).ascending().and(Sort.by(Product_.ID).ascending());
+            case PRICE_DESC:
+                return Sort.by(Product_.PRICE).descending().and(Sort.by(Product_.ID).descending());
+            default:
+                return Sort.by(Product_.ID).ascending();
+        }
+    }
+
+    public static CatalogSort fromPageable(Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor(Product_.PRICE);
+        if (order == null) {
+            return NONE;
+        }
+        return order.isAscending() ? PRICE_ASC : PRICE_DESC;
+    }
+}
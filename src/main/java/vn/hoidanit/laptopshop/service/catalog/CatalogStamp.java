@@ -0,0 +1,12 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.time.Instant;
+
+/**
+ * COUNT(*) và MAX(updated_at) của bảng products. Thêm / sửa sản phẩm ở bất kỳ
+ * node nào làm tăng updated_at, xóa làm giảm count, nên so hai stamp là biết
+ * catalog trong DB đã đổi hay chưa.
+ */
+public record CatalogStamp(long count, Instant lastUpdated) {
+    public static final CatalogStamp NONE = new CatalogStamp(-1, null);
+}
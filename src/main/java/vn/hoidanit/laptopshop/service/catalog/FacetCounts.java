@@ -0,0 +1,36 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Số sản phẩm khớp với từng giá trị của mỗi nhóm lọc. Khi đếm một nhóm thì bỏ
+ * qua lựa chọn của chính nhóm đó, chỉ áp dụng các nhóm còn lại.
+ */
+public class FacetCounts {
+    public static final FacetCounts EMPTY = new FacetCounts(Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyMap());
+
+    // key: factory / target viết hoa, price theo slug (vd: 10-15trieu)
+    private final Map<String, Long> factory;
+    private final Map<String, Long> target;
+    private final Map<String, Long> price;
+
+    public FacetCounts(Map<String, Long> factory, Map<String, Long> target, Map<String, Long> price) {
+        this.factory = Collections.unmodifiableMap(factory);
+        this.target = Collections.unmodifiableMap(target);
+        this.price = Collections.unmodifiableMap(price);
+    }
+
+    public Map<String, Long> getFactory() {
+        return factory;
+    }
+
+    public Map<String, Long> getTarget() {
+        return target;
+    }
+
+    public Map<String, Long> getPrice() {
+        return price;
+    }
+}
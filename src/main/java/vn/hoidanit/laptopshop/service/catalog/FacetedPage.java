@@ -0,0 +1,21 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import org.springframework.data.domain.Page;
+
+public class FacetedPage<T> {
+    private final Page<T> page;
+    private final FacetCounts facets;
+
+    public FacetedPage(Page<T> page, FacetCounts facets) {
+        this.page = page;
+        this.facets = facets;
+    }
+
+    public Page<T> getPage() {
+        return page;
+    }
+
+    public FacetCounts getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,44 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+public enum PriceBucket {
+    DUOI_10TRIEU("duoi-10trieu", 1, 10000000),
+    TU_10_15TRIEU("10-15trieu", 10000000, 15000000),
+    TU_15_20TRIEU("15-20trieu", 15000000, 20000000),
+    TREN_20TRIEU("tren-20trieu", 20000000, 2000000000);
+
+    private final String slug;
+    private final double min;
+    private final double max;
+
+    PriceBucket(String slug, double min, double max) {
+        this.slug = slug;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    // giống criteriaBuilder.between: bao gồm cả 2 đầu mút
+    public boolean contains(double price) {
+        return price >= this.min && price <= this.max;
+    }
+
+    public static PriceBucket fromSlug(String slug) {
+        for (PriceBucket bucket : values()) {
+            if (bucket.slug.equals(slug)) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+}
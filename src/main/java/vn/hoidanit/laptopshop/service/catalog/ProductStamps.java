@@ -0,0 +1,47 @@
+package vn.hoidanit.laptopshop.service.catalog;
+
+import java.time.Instant;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+
+/**
+ * Thời điểm sửa cuối của từng sản phẩm, đọc từ cột products.updated_at (một
+ * lookup theo khóa chính, không load entity) để trả 304. Mọi node đọc cùng một
+ * giá trị nên ETag / Last-Modified không phụ thuộc node nhận request.
+ */
+@Component
+public class ProductStamps {
+    private final ProductRepository productRepository;
+
+    public ProductStamps(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    // sản phẩm cũ chưa có updated_at: gán một lần trong DB, node khởi động sau không đổi gì
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        this.productRepository.fillMissingUpdatedAt(Instant.ofEpochMilli(System.currentTimeMillis() / 1000 * 1000));
+    }
+
+    // luôn tăng so với giá trị đã lưu, kể cả khi 2 lần sửa rơi vào cùng 1 millisecond
+    public Instant next(long id) {
+        long now = System.currentTimeMillis();
+        long previous = id == 0 ? -1 : this.lastModified(id);
+        if (now <= previous) {
+            now = previous + 1;
+        }
+        return Instant.ofEpochMilli(now);
+    }
+
+    // -1 nếu không có sản phẩm này
+    public long lastModified(long id) {
+        Instant updatedAt = this.productRepository.findUpdatedAtById(id);
+        return updatedAt == null ? -1 : updatedAt.toEpochMilli();
+    }
+}
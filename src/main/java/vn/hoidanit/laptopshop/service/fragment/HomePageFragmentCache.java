@@ -0,0 +1,150 @@
+package vn.hoidanit.laptopshop.service.fragment;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import vn.hoidanit.laptopshop.service.ProductService;
+import vn.hoidanit.laptopshop.service.catalog.CatalogIndex;
+import vn.hoidanit.laptopshop.service.catalog.CatalogStamp;
+import vn.hoidanit.laptopshop.service.idempotency.IdempotencyService;
+
+/**
+ * HTML của khối sản phẩm nổi bật ở trang chủ, chỉ render lại khi
+ * {@link CatalogStamp} trong DB đổi, nên sản phẩm sửa ở node khác cũng làm mới
+ * fragment trên mọi node. Phần theo người dùng (CSRF token, idempotency token
+ * của từng form) được chèn vào lúc trả về; giỏ hàng và tên người dùng nằm ở
+ * header nên không bị cache.
+ * <p>
+ * Các đoạn được giữ dạng String chứ không phải byte[] UTF-8: fragment được
+ * trang chủ (JSP) in qua JspWriter, ghi byte thẳng vào output stream sẽ lẫn với
+ * writer của JSP.
+ */
+@Component
+public class HomePageFragmentCache {
+    static final String VIEW = "/WEB-INF/view/client/homepage/product-strip.jsp";
+    static final String CSRF_PLACEHOLDER = "__CSRF_TOKEN__";
+    static final String IDEMPOTENCY_PLACEHOLDER = "__IDEMPOTENCY_KEY__";
+    private static final Pattern PLACEHOLDERS = Pattern
+            .compile(Pattern.quote(CSRF_PLACEHOLDER) + "|" + Pattern.quote(IDEMPOTENCY_PLACEHOLDER));
+    static final int PRODUCT_COUNT = 10;
+
+    private final ProductService productService;
+    private final CatalogIndex catalogIndex;
+    private final IdempotencyService idempotencyService;
+
+    private volatile Fragment fragment = new Fragment(CatalogStamp.NONE, null, null);
+
+    public HomePageFragmentCache(ProductService productService, CatalogIndex catalogIndex,
+            IdempotencyService idempotencyService) {
+        this.productService = productService;
+        this.catalogIndex = catalogIndex;
+        this.idempotencyService = idempotencyService;
+    }
+
+    public String render(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Fragment current = this.fragment;
+        CatalogStamp stamp = this.catalogIndex.getStamp();
+        if (!current.stamp.equals(stamp)) {
+            current = this.rebuild(stamp, request, response);
+        }
+
+        CsrfToken token = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        String tokenValue = token == null ? "" : token.getToken();
+        StringBuilder sb = new StringBuilder(current.length + current.parts.length * 40);
+        for (int i = 0; i < current.parts.length; i++) {
+            if (i > 0) {
+                sb.append(current.csrf[i - 1] ? tokenValue : this.idempotencyService.issue());
+            }
+            sb.append(current.parts[i]);
+        }
+        return sb.toString();
+    }
+
+    private synchronized Fragment rebuild(CatalogStamp stamp, HttpServletRequest request,
+            HttpServletResponse response) throws ServletException, IOException {
+        if (this.fragment.stamp.equals(stamp)) {
+            return this.fragment;
+        }
+
+        Object previous = request.getAttribute("products");
+        request.setAttribute("products",
+                this.productService.fetchProducts(PageRequest.of(0, PRODUCT_COUNT)).getContent());
+        CapturingResponse capture = new CapturingResponse(response);
+        try {
+            request.getRequestDispatcher(VIEW).include(request, capture);
+        } finally {
+            request.setAttribute("products", previous);
+        }
+
+        String content = capture.getContent();
+        List<String> parts = new ArrayList<>();
+        List<Boolean> csrf = new ArrayList<>();
+        Matcher matcher = PLACEHOLDERS.matcher(content);
+        int start = 0;
+        while (matcher.find()) {
+            parts.add(content.substring(start, matcher.start()));
+            csrf.add(CSRF_PLACEHOLDER.equals(matcher.group()));
+            start = matcher.end();
+        }
+        parts.add(content.substring(start));
+        boolean[] markers = new boolean[csrf.size()];
+        for (int i = 0; i < markers.length; i++) {
+            markers[i] = csrf.get(i);
+        }
+        Fragment built = new Fragment(stamp, parts.toArray(new String[0]), markers);
+        this.fragment = built;
+        return built;
+    }
+
+    private static final class Fragment {
+        private final CatalogStamp stamp;
+        private final String[] parts;
+        // giữa parts[i] và parts[i + 1]: true = CSRF token, false = idempotency token mới
+        private final boolean[] csrf;
+        private final int length;
+
+        Fragment(CatalogStamp stamp, String[] parts, boolean[] csrf) {
+            this.stamp = stamp;
+            this.parts = parts == null ? new String[] { "" } : parts;
+            this.csrf = csrf == null ? new boolean[0] : csrf;
+            int total = 0;
+            for (String part : this.parts) {
+                total += part.length();
+            }
+            this.length = total;
+        }
+    }
+
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+        private final CharArrayWriter buffer = new CharArrayWriter(8192);
+        private final PrintWriter writer = new PrintWriter(this.buffer);
+
+        CapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return this.writer;
+        }
+
+        String getContent() {
+            this.writer.flush();
+            return this.buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package vn.hoidanit.laptopshop.service.idempotency;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chống gửi trùng form (bấm đặt hàng hai lần, thử lại khi chậm). Mỗi lần render
+ * form nhận một token ngẫu nhiên; lần gửi đầu tiên với token đó chạy thật và lưu
+ * kết quả (view redirect), các lần gửi sau trả lại đúng kết quả đó, nếu lần đầu
+ * còn đang chạy thì chờ tối đa idempotency.wait rồi trả busyOutcome.
+ * <p>
+ * Lưu trong bộ nhớ, có giới hạn và hết hạn sau idempotency.ttl. Nhiều node thì
+ * bật idempotency.database.enabled để giữ khóa bằng INSERT IGNORE vào
+ * idempotency_keys.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String PARAMETER = "idempotencyKey";
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    private static final String CLAIM = "INSERT IGNORE INTO idempotency_keys (id, created_at, expires_at) VALUES (?, ?, ?)";
+    private static final String READ = "SELECT outcome FROM idempotency_keys WHERE id = ?";
+    private static final String COMPLETE = "UPDATE idempotency_keys SET outcome = ? WHERE id = ?";
+    private static final String ABANDON = "DELETE FROM idempotency_keys WHERE id = ?";
+    private static final String PURGE = "DELETE FROM idempotency_keys WHERE expires_at < ? LIMIT ?";
+    private static final int PURGE_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean databaseEnabled;
+    private final Duration ttl;
+    private final long ttlNanos;
+    private final long waitMillis;
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter busy;
+    private final Counter untracked;
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+            @Value("${idempotency.ttl:10m}") Duration ttl,
+            @Value("${idempotency.wait:3s}") Duration wait,
+            @Value("${idempotency.max-size:100000}") int maxSize,
+            @Value("${idempotency.database.enabled:false}") boolean databaseEnabled,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseEnabled = databaseEnabled;
+        this.ttl = ttl;
+        this.ttlNanos = ttl.toNanos();
+        this.waitMillis = wait.toMillis();
+        this.maxSize = maxSize;
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-purge");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.executed = Counter.builder("idempotency.requests").tag("result", "executed").register(meterRegistry);
+        this.replayed = Counter.builder("idempotency.requests").tag("result", "replayed").register(meterRegistry);
+        this.busy = Counter.builder("idempotency.requests").tag("result", "busy").register(meterRegistry);
+        this.untracked = Counter.builder("idempotency.requests").tag("result", "untracked").register(meterRegistry);
+        Gauge.builder("idempotency.store.size", this.entries, Map::size).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = Math.max(1000, this.ttl.toMillis() / 2);
+        this.purger.scheduleWithFixedDelay(this::purge, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.purger.shutdown();
+    }
+
+    // token cho một lần render form
+    public String issue() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Chạy action một lần cho mỗi (scope, user, token). Không có token thì chạy
+     * bình thường. action ném exception thì khóa được bỏ để user gửi lại được.
+     * busyOutcome được trả cả khi lần đầu còn chạy lẫn khi lần đầu đã lỗi, nên
+     * phải là trang trung lập (không báo thành công).
+     */
+    public String execute(String scope, long userId, String token, String busyOutcome, Supplier<String> action) {
+        if (token == null || token.isBlank() || token.length() > MAX_TOKEN_LENGTH) {
+            return action.get();
+        }
+        String key = scope + ":" + userId + ":" + token;
+        long now = System.nanoTime();
+
+        Entry mine = new Entry(now);
+        Entry existing = this.claimInMemory(key, mine, now);
+        if (existing != null) {
+            return this.replay(existing, busyOutcome);
+        }
+        if (this.databaseEnabled && !this.claimInDatabase(key)) {
+            // node khác đã nhận token này
+            List<String> outcomes = this.jdbcTemplate.queryForList(READ, String.class, key);
+            String outcome = outcomes.isEmpty() ? null : outcomes.get(0);
+            if (outcome == null) {
+                this.entries.remove(key, mine);
+                mine.outcome.complete(busyOutcome);
+                this.busy.increment();
+                return busyOutcome;
+            }
+            mine.outcome.complete(outcome);
+            this.replayed.increment();
+            return outcome;
+        }
+
+        String outcome;
+        try {
+            outcome = action.get();
+        } catch (RuntimeException e) {
+            this.entries.remove(key, mine);
+            mine.outcome.completeExceptionally(e);
+            if (this.databaseEnabled) {
+                this.jdbcTemplate.update(ABANDON, key);
+            }
+            throw e;
+        }
+        mine.outcome.complete(outcome);
+        if (this.databaseEnabled) {
+            this.jdbcTemplate.update(COMPLETE, outcome, key);
+        }
+        this.executed.increment();
+        return outcome;
+    }
+
+    // null = request này giữ token; khác null = đã có request trước đó
+    private Entry claimInMemory(String key, Entry mine, long now) {
+        Entry existing = this.entries.get(key);
+        if (existing != null) {
+            if (now - existing.createdAt < this.ttlNanos) {
+                return existing;
+            }
+            this.entries.remove(key, existing);
+        }
+        if (this.entries.size() >= this.maxSize) {
+            this.purgeExpired(now);
+        }
+        if (this.entries.size() >= this.maxSize) {
+            // bộ nhớ đầy: vẫn chạy, chỉ còn khóa trong DB (nếu bật) chống trùng
+            this.untracked.increment();
+            return null;
+        }
+        return this.entries.putIfAbsent(key, mine);
+    }
+
+    private boolean claimInDatabase(String key) {
+        Instant now = Instant.now();
+        return this.jdbcTemplate.update(CLAIM, key, Timestamp.from(now), Timestamp.from(now.plus(this.ttl))) > 0;
+    }
+
+    private String replay(Entry existing, String busyOutcome) {
+        try {
+            String outcome = existing.outcome.get(this.waitMillis, TimeUnit.MILLISECONDS);
+            this.replayed.increment();
+            return outcome;
+        } catch (TimeoutException | ExecutionException e) {
+            // lần đầu còn chạy hoặc đã lỗi
+            this.busy.increment();
+            return busyOutcome;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.busy.increment();
+            return busyOutcome;
+        }
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().createdAt >= this.ttlNanos) {
+                it.remove();
+            }
+        }
+    }
+
+    private void purge() {
+        this.purgeExpired(System.nanoTime());
+        if (!this.databaseEnabled) {
+            return;
+        }
+        try {
+            Timestamp now = Timestamp.from(Instant.now());
+            while (this.jdbcTemplate.update(PURGE, now, PURGE_CHUNK) >= PURGE_CHUNK) {
+                // còn khóa hết hạn: xóa tiếp
+            }
+        } catch (RuntimeException e) {
+            log.warn("idempotency key purge failed", e);
+        }
+    }
+
+    private static final class Entry {
+        private final long createdAt;
+        private final CompletableFuture<String> outcome = new CompletableFuture<>();
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package vn.hoidanit.laptopshop.service.order;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+import vn.hoidanit.laptopshop.domain.OrderDetail;
+
+/**
+ * order_detail trước đây dùng IDENTITY; bảng order_detail_seq do Hibernate tạo
+ * bắt đầu từ 1 nên phải đẩy lên trên id lớn nhất hiện có (cộng một khối cấp phát)
+ * trước khi INSERT đầu tiên, nếu không sẽ trùng khóa chính.
+ * Phụ thuộc EntityManagerFactory để chạy sau khi ddl-auto đã tạo bảng.
+ */
+@Component
+public class OrderDetailSequenceAligner {
+    private static final Logger log = LoggerFactory.getLogger(OrderDetailSequenceAligner.class);
+
+    private static final String ALIGN = "UPDATE order_detail_seq SET next_val = GREATEST(next_val, "
+            + "(SELECT COALESCE(MAX(id), 0) + ? FROM order_detail))";
+
+    public OrderDetailSequenceAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        int updated = jdbcTemplate.update(ALIGN, OrderDetail.ID_ALLOCATION_SIZE + 1);
+        if (updated > 0) {
+            log.info("order_detail_seq aligned with existing order_detail ids");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package vn.hoidanit.laptopshop.service.order;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import vn.hoidanit.laptopshop.domain.OrderIntake;
+import vn.hoidanit.laptopshop.domain.dto.CheckoutLineDTO;
+import vn.hoidanit.laptopshop.repository.OrderIntakeRepository;
+import vn.hoidanit.laptopshop.service.cart.CartEngine;
+import vn.hoidanit.laptopshop.service.stock.FlashSaleStock;
+import vn.hoidanit.laptopshop.service.stock.InsufficientStockException;
+
+/**
+ * Phía request của luồng đặt hàng: trong một transaction, khóa các dòng giỏ
+ * hàng, ghi một dòng order_intake (ảnh chụp giỏ hàng) và chuyển các dòng đó ra
+ * khỏi giỏ, rồi trả về ngay; OrderIntakeWorker tạo Order / OrderDetail sau đó.
+ * Giỏ đã trống nên bấm đặt hàng lần nữa không tạo yêu cầu trùng; yêu cầu bị
+ * REJECTED / FAILED thì worker trả các dòng về giỏ.
+ * order.intake.async=false thì xử lý luôn trong request thread như trước.
+ */
+@Service
+public class OrderIntakeService {
+    // khóa cả dòng carts lẫn cart_detail: lần đặt hàng đồng thời thứ hai chờ rồi thấy giỏ trống
+    private static final String LOCK_CART_LINES = "SELECT cd.id, c.id, cd.product_id, cd.price, cd.quantity "
+            + "FROM cart_detail cd JOIN carts c ON c.id = cd.cart_id WHERE c.user_id = ? ORDER BY cd.product_id "
+            + "FOR UPDATE";
+    // chỉ xóa các dòng đã chụp: dòng thêm vào sau khi khóa vẫn ở lại giỏ
+    private static final String TAKE_LINE = "DELETE FROM cart_detail WHERE id = ?";
+    static final String RECOUNT_CART = "UPDATE carts c SET c.sum = "
+            + "(SELECT COUNT(*) FROM cart_detail cd WHERE cd.cart_id = c.id) WHERE c.user_id = ?";
+
+    private final OrderIntakeRepository orderIntakeRepository;
+    private final OrderIntakeWorker orderIntakeWorker;
+    private final FlashSaleStock flashSaleStock;
+    private final CartEngine cartEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean async;
+
+    public OrderIntakeService(OrderIntakeRepository orderIntakeRepository, OrderIntakeWorker orderIntakeWorker,
+            FlashSaleStock flashSaleStock, CartEngine cartEngine, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${order.intake.async:true}") boolean async) {
+        this.orderIntakeRepository = orderIntakeRepository;
+        this.orderIntakeWorker = orderIntakeWorker;
+        this.flashSaleStock = flashSaleStock;
+        this.cartEngine = cartEngine;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.async = async;
+    }
+
+    /**
+     * Chuyển giỏ hàng của user thành một yêu cầu đặt hàng. null nếu giỏ trống
+     * (kể cả khi lần bấm trước đã lấy hết giỏ). Sản phẩm flash sale đã hết
+     * -> InsufficientStockException, giỏ giữ nguyên; thiếu hàng khi xử lý đồng
+     * bộ cũng ném InsufficientStockException (các dòng đã được trả về giỏ).
+     */
+    public OrderIntake submit(long userId, String receiverName, String receiverAddress, String receiverPhone) {
+        // ghi các lần thêm đang chờ trước, ngoài transaction của yêu cầu đặt hàng
+        this.cartEngine.flush(userId);
+        OrderIntake intake = this.transactionTemplate
+                .execute(status -> this.take(userId, receiverName, receiverAddress, receiverPhone));
+        if (intake == null) {
+            return null;
+        }
+        this.cartEngine.forget(userId);
+
+        if (this.async) {
+            this.orderIntakeWorker.dispatch(intake.getId());
+        } else {
+            this.orderIntakeWorker.process(intake.getId());
+        }
+        return intake;
+    }
+
+    private OrderIntake take(long userId, String receiverName, String receiverAddress, String receiverPhone) {
+        List<Long> detailIds = new ArrayList<>();
+        List<CheckoutLineDTO> lines = new ArrayList<>();
+        this.jdbcTemplate.query(LOCK_CART_LINES, rs -> {
+            detailIds.add(rs.getLong(1));
+            lines.add(new CheckoutLineDTO(rs.getLong(2), rs.getLong(3), rs.getDouble(4), rs.getLong(5)));
+        }, userId);
+        if (lines.isEmpty()) {
+            return null;
+        }
+        for (CheckoutLineDTO line : lines) {
+            if (this.flashSaleStock.isSoldOut(line.getProductId())) {
+                throw new InsufficientStockException(line.getProductId());
+            }
+        }
+
+        OrderIntake intake = new OrderIntake();
+        intake.setUserId(userId);
+        intake.setReceiverName(receiverName);
+        intake.setReceiverAddress(receiverAddress);
+        intake.setReceiverPhone(receiverPhone);
+        intake.setLines(encodeLines(lines));
+        double sum = 0;
+        for (CheckoutLineDTO line : lines) {
+            sum += line.getPrice();
+        }
+        intake.setTotalPrice(sum);
+        intake.setStatus(OrderIntake.PENDING);
+        intake.setCreatedAt(Instant.now());
+        intake = this.orderIntakeRepository.save(intake);
+
+        List<Object[]> takes = new ArrayList<>(detailIds.size());
+        for (Long detailId : detailIds) {
+            takes.add(new Object[] { detailId });
+        }
+        this.jdbcTemplate.batchUpdate(TAKE_LINE, takes);
+        this.jdbcTemplate.update(RECOUNT_CART, userId);
+        return intake;
+    }
+
+    public List<OrderIntake> fetchOpenIntakesByUser(long userId) {
+        return this.orderIntakeRepository.findTop20ByUserIdAndStatusNotOrderByIdDesc(userId, OrderIntake.DONE);
+    }
+
+    static String encodeLines(List<CheckoutLineDTO> lines) {
+        StringBuilder sb = new StringBuilder(lines.size() * 16);
+        for (CheckoutLineDTO line : lines) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(line.getProductId()).append(':').append(line.getQuantity()).append(':').append(line.getPrice());
+        }
+        return sb.toString();
+    }
+
+    static List<CheckoutLineDTO> decodeLines(String encoded) {
+        List<CheckoutLineDTO> lines = new ArrayList<>();
+        for (String part : encoded.split(";")) {
+            String[] fields = part.split(":");
+            lines.add(new CheckoutLineDTO(0, Long.parseLong(fields[0]), Double.parseDouble(fields[2]),
+                    Long.parseLong(fields[1])));
+        }
+        return lines;
+    }
+}
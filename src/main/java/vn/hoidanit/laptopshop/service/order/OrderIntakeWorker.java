@@ -0,0 +1,334 @@
+package vn.hoidanit.laptopshop.service.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import vn.hoidanit.laptopshop.domain.Order;
+import vn.hoidanit.laptopshop.domain.OrderDetail;
+import vn.hoidanit.laptopshop.domain.OrderIntake;
+import vn.hoidanit.laptopshop.domain.OrderOutbox;
+import vn.hoidanit.laptopshop.domain.dto.CheckoutLineDTO;
+import vn.hoidanit.laptopshop.repository.OrderDetailRepository;
+import vn.hoidanit.laptopshop.repository.OrderIntakeRepository;
+import vn.hoidanit.laptopshop.repository.OrderOutboxRepository;
+import vn.hoidanit.laptopshop.repository.OrderRepository;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+import vn.hoidanit.laptopshop.repository.UserRepository;
+import vn.hoidanit.laptopshop.service.cart.CartEngine;
+import vn.hoidanit.laptopshop.service.stock.FlashSaleStock;
+import vn.hoidanit.laptopshop.service.stock.InsufficientStockException;
+import vn.hoidanit.laptopshop.service.stock.StockClaimRequiredException;
+import vn.hoidanit.laptopshop.service.stock.StockReservationService;
+
+/**
+ * Tạo đơn hàng từ order_intake bằng một pool worker có giới hạn. Mỗi yêu cầu
+ * được xử lý trong một transaction: khóa dòng intake (SKIP LOCKED, chỉ khi còn
+ * PENDING), giữ tồn kho, ghi Order / OrderDetail / order_outbox và chuyển
+ * intake sang DONE. Các dòng giỏ hàng đã được OrderIntakeService lấy ra khi ghi
+ * intake; yêu cầu chuyển REJECTED / FAILED thì trả chúng về giỏ cùng
+ * transaction đổi trạng thái. Vì trạng thái intake đổi cùng transaction với
+ * đơn hàng (và orders.intake_id là unique), xử lý lại một yêu cầu bất kỳ lúc
+ * nào cũng không tạo đơn trùng; tiến trình dừng giữa chừng thì intake vẫn
+ * PENDING và được bộ quét nhận lại.
+ */
+@Component
+public class OrderIntakeWorker {
+    private static final Logger log = LoggerFactory.getLogger(OrderIntakeWorker.class);
+
+    private static final String CREATE_CART = "INSERT INTO carts (user_id, sum) VALUES (?, 0) "
+            + "ON DUPLICATE KEY UPDATE user_id = user_id";
+    // cộng vào dòng user đã thêm lại trong lúc chờ; sản phẩm đã bị xóa thì bỏ qua
+    private static final String RESTORE_LINE = "INSERT INTO cart_detail (cart_id, product_id, price, quantity) "
+            + "SELECT c.id, p.id, ?, ? FROM carts c JOIN products p ON p.id = ? WHERE c.user_id = ? "
+            + "ON DUPLICATE KEY UPDATE quantity = cart_detail.quantity + VALUES(quantity)";
+
+    // số lần nhận thêm khối flash sale cho một yêu cầu trước khi coi là hết hàng
+    private static final int MAX_CLAIM_ROUNDS = 3;
+
+    private final OrderIntakeRepository orderIntakeRepository;
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final StockReservationService stockReservationService;
+    private final FlashSaleStock flashSaleStock;
+    private final CartEngine cartEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService poller;
+    private final Set<Long> inflight = ConcurrentHashMap.newKeySet();
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long pollIntervalMillis;
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong oldestPendingAt = new AtomicLong();
+    private final Timer lag;
+    private final Counter done;
+    private final Counter rejected;
+    private final Counter failed;
+
+    public OrderIntakeWorker(OrderIntakeRepository orderIntakeRepository, OrderRepository orderRepository,
+            OrderDetailRepository orderDetailRepository, OrderOutboxRepository orderOutboxRepository,
+            ProductRepository productRepository, UserRepository userRepository,
+            StockReservationService stockReservationService,
+            FlashSaleStock flashSaleStock, CartEngine cartEngine, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${order.intake.workers:4}") int workers,
+            @Value("${order.intake.queue-capacity:200}") int queueCapacity,
+            @Value("${order.intake.batch-size:50}") int batchSize,
+            @Value("${order.intake.max-attempts:5}") int maxAttempts,
+            @Value("${order.intake.poll-interval:500ms}") Duration pollInterval,
+            MeterRegistry meterRegistry) {
+        this.orderIntakeRepository = orderIntakeRepository;
+        this.orderRepository = orderRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.stockReservationService = stockReservationService;
+        this.flashSaleStock = flashSaleStock;
+        this.cartEngine = cartEngine;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.pollIntervalMillis = pollInterval.toMillis();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "order-intake-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-intake-poller");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // độ trễ từ lúc bấm đặt hàng tới khi đơn hàng commit
+        this.lag = Timer.builder("order.intake.lag").register(meterRegistry);
+        this.done = Counter.builder("order.intake.processed").tag("outcome", "done").register(meterRegistry);
+        this.rejected = Counter.builder("order.intake.processed").tag("outcome", "rejected").register(meterRegistry);
+        this.failed = Counter.builder("order.intake.processed").tag("outcome", "error").register(meterRegistry);
+        Gauge.builder("order.intake.queue.depth", this.pendingCount, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("order.intake.inflight", this.inflight, Set::size).register(meterRegistry);
+        Gauge.builder("order.intake.oldest.age", this, OrderIntakeWorker::oldestPendingAgeSeconds)
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // bộ quét nhận lại các yêu cầu còn PENDING (kể cả từ trước khi khởi động lại)
+        this.poller.scheduleWithFixedDelay(this::pollSafely, 0, this.pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.poller.shutdown();
+        this.pool.shutdown();
+        this.pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // đưa yêu cầu vào pool, pool đầy thì để bộ quét nhận sau
+    public void dispatch(long intakeId) {
+        if (!this.inflight.add(intakeId)) {
+            return;
+        }
+        try {
+            this.pool.execute(() -> this.run(intakeId));
+        } catch (RejectedExecutionException e) {
+            this.inflight.remove(intakeId);
+        }
+    }
+
+    private void run(long intakeId) {
+        try {
+            this.process(intakeId);
+        } catch (InsufficientStockException e) {
+            // đã chuyển REJECTED trong process
+        } catch (RuntimeException e) {
+            log.warn("order intake {} failed", intakeId, e);
+            this.failed.increment();
+            Long userId = this.transactionTemplate.execute(status -> {
+                int updated = this.orderIntakeRepository.recordFailure(intakeId, this.maxAttempts, Instant.now());
+                return updated == 0 ? null : this.restoreCart(intakeId);
+            });
+            if (userId != null) {
+                this.cartEngine.forget(userId);
+            }
+        } finally {
+            this.inflight.remove(intakeId);
+        }
+    }
+
+    // tạo đơn hàng cho một yêu cầu; thiếu hàng -> REJECTED và ném InsufficientStockException
+    public void process(long intakeId) {
+        OrderIntake intake;
+        try {
+            intake = this.createOrderClaimingStock(intakeId);
+        } catch (InsufficientStockException e) {
+            Long userId = this.transactionTemplate.execute(status -> {
+                int updated = this.orderIntakeRepository.markRejected(intakeId, Instant.now());
+                return updated == 0 ? null : this.restoreCart(intakeId);
+            });
+            if (userId != null) {
+                this.cartEngine.forget(userId);
+            }
+            this.rejected.increment();
+            throw e;
+        }
+        if (intake != null) {
+            this.done.increment();
+            this.lag.record(Duration.between(intake.getCreatedAt(), intake.getProcessedAt()));
+        }
+    }
+
+    // phần flash sale của node không đủ: nhận thêm khối ngoài transaction (một connection mỗi lúc) rồi chạy lại
+    private OrderIntake createOrderClaimingStock(long intakeId) {
+        for (int round = 1;; round++) {
+            try {
+                return this.transactionTemplate.execute(status -> this.createOrder(intakeId));
+            } catch (StockClaimRequiredException e) {
+                if (round >= MAX_CLAIM_ROUNDS) {
+                    throw new InsufficientStockException(e.getProductId());
+                }
+                this.flashSaleStock.claimFor(e.getProductId(), e.getQuantity());
+            }
+        }
+    }
+
+    // null nếu yêu cầu không còn PENDING hoặc worker khác đang xử lý
+    private OrderIntake createOrder(long intakeId) {
+        Optional<OrderIntake> claimed = this.orderIntakeRepository.claim(intakeId);
+        if (claimed.isEmpty()) {
+            return null;
+        }
+        OrderIntake intake = claimed.get();
+        List<CheckoutLineDTO> lines = OrderIntakeService.decodeLines(intake.getLines());
+
+        Map<Long, Long> quantities = new HashMap<>();
+        for (CheckoutLineDTO line : lines) {
+            quantities.merge(line.getProductId(), line.getQuantity(), Long::sum);
+        }
+        this.stockReservationService.reserve(quantities);
+
+        Order order = new Order();
+        order.setUser(this.userRepository.getReferenceById(intake.getUserId()));
+        order.setReceiverName(intake.getReceiverName());
+        order.setReceicerAddress(intake.getReceiverAddress());
+        order.setReceiverPhone(intake.getReceiverPhone());
+        order.setStatus("PENDING");
+        order.setTotalPrice(intake.getTotalPrice());
+        order.setIntakeId(intake.getId());
+        order = this.orderRepository.save(order);
+
+        // persist chỉ cấp id, INSERT order_detail được gom thành một lô khi commit
+        List<OrderDetail> orderDetails = new ArrayList<>(lines.size());
+        for (CheckoutLineDTO line : lines) {
+            OrderDetail orderDetail = new OrderDetail();
+            orderDetail.setOrder(order);
+            orderDetail.setPrice(line.getPrice());
+            orderDetail.setProduct(this.productRepository.getReferenceById(line.getProductId()));
+            orderDetail.setQuantity(line.getQuantity());
+            if (this.flashSaleStock.isFlashSale(line.getProductId())) {
+                orderDetail.setStockPending(true);
+                orderDetail.setStockNode(this.flashSaleStock.getNodeId());
+            }
+            orderDetails.add(orderDetail);
+        }
+        this.orderDetailRepository.saveAll(orderDetails);
+
+        Instant now = Instant.now();
+        OrderOutbox event = new OrderOutbox();
+        event.setOrderId(order.getId());
+        event.setEventType(OrderOutbox.ORDER_PLACED);
+        event.setCreatedAt(now);
+        this.orderOutboxRepository.save(event);
+
+        intake.setStatus(OrderIntake.DONE);
+        intake.setOrderId(order.getId());
+        intake.setProcessedAt(now);
+        return intake;
+    }
+
+    // gọi ngay sau khi intake rời PENDING trong cùng transaction nên chỉ trả một lần.
+    // Intake vừa chuyển REJECTED / FAILED: trả các dòng đã đặt về giỏ hàng, trả về userId (null nếu không trả)
+    private Long restoreCart(long intakeId) {
+        OrderIntake intake = this.orderIntakeRepository.findById(intakeId).orElse(null);
+        if (intake == null || !(OrderIntake.REJECTED.equals(intake.getStatus())
+                || OrderIntake.FAILED.equals(intake.getStatus()))) {
+            return null;
+        }
+        List<CheckoutLineDTO> lines = OrderIntakeService.decodeLines(intake.getLines());
+        List<Object[]> restores = new ArrayList<>(lines.size());
+        for (CheckoutLineDTO line : lines) {
+            restores.add(new Object[] { line.getPrice(), line.getQuantity(), line.getProductId(),
+                    intake.getUserId() });
+        }
+        this.jdbcTemplate.update(CREATE_CART, intake.getUserId());
+        this.jdbcTemplate.batchUpdate(RESTORE_LINE, restores);
+        this.jdbcTemplate.update(OrderIntakeService.RECOUNT_CART, intake.getUserId());
+        return intake.getUserId();
+    }
+
+    private void pollSafely() {
+        try {
+            List<Object[]> stats = this.orderIntakeRepository.pendingStats();
+            Object[] row = stats.isEmpty() ? new Object[] { 0L, null } : stats.get(0);
+            this.pendingCount.set(((Number) row[0]).longValue());
+            this.oldestPendingAt.set(row[1] == null ? 0 : ((Instant) row[1]).toEpochMilli());
+
+            int free = this.queueCapacity - this.pool.getQueue().size();
+            if (this.pendingCount.get() == 0 || free <= 0) {
+                return;
+            }
+            for (Long id : this.orderIntakeRepository.findPendingIds(PageRequest.of(0, Math.min(this.batchSize, free)))) {
+                this.dispatch(id);
+            }
+        } catch (RuntimeException e) {
+            log.warn("order intake poll failed", e);
+        }
+    }
+
+    private double oldestPendingAgeSeconds() {
+        long oldest = this.oldestPendingAt.get();
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest) / 1000.0;
+    }
+}
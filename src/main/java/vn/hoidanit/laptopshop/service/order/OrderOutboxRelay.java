@@ -0,0 +1,93 @@
+package vn.hoidanit.laptopshop.service.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import vn.hoidanit.laptopshop.domain.OrderOutbox;
+import vn.hoidanit.laptopshop.repository.OrderOutboxRepository;
+
+// đọc order_outbox theo lô và phát OrderPlacedEvent trong ứng dụng, đánh dấu published_at cùng transaction;
+// listener nhận sự kiện sau khi lô commit (@TransactionalEventListener) nên lô rollback không đếm hai lần
+@Component
+public class OrderOutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OrderOutboxRelay.class);
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final int batchSize;
+    private final long intervalMillis;
+    private final Counter published;
+
+    public OrderOutboxRelay(OrderOutboxRepository orderOutboxRepository, ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            @Value("${order.outbox.interval:1s}") Duration interval,
+            @Value("${order.outbox.batch-size:100}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.intervalMillis = interval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+        this.published = Counter.builder("order.outbox.published").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.scheduler.scheduleWithFixedDelay(this::relaySafely, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    private void relaySafely() {
+        try {
+            Integer count;
+            do {
+                count = this.transactionTemplate.execute(status -> this.relayBatch());
+            } while (count != null && count >= this.batchSize);
+        } catch (RuntimeException e) {
+            log.warn("order outbox relay failed, will retry", e);
+        }
+    }
+
+    private int relayBatch() {
+        List<OrderOutbox> events = this.orderOutboxRepository.lockUnpublished(PageRequest.of(0, this.batchSize));
+        Instant now = Instant.now();
+        for (OrderOutbox event : events) {
+            if (OrderOutbox.ORDER_PLACED.equals(event.getEventType())) {
+                this.eventPublisher.publishEvent(new OrderPlacedEvent(event.getOrderId()));
+            }
+            event.setPublishedAt(now);
+        }
+        this.published.increment(events.size());
+        return events.size();
+    }
+}
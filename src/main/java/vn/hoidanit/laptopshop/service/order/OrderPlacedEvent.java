@@ -0,0 +1,5 @@
+package vn.hoidanit.laptopshop.service.order;
+
+// phát từ order_outbox sau khi đơn hàng đã commit (ít nhất một lần)
+public record OrderPlacedEvent(long orderId) {
+}
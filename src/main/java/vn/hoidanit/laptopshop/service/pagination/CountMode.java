@@ -0,0 +1,10 @@
+package vn.hoidanit.laptopshop.service.pagination;
+
+public enum CountMode {
+    // COUNT(*) chạy song song với query lấy dữ liệu
+    EXACT,
+    // nhớ kết quả COUNT(*), cập nhật +1 / -1 khi thêm / xóa
+    CACHED,
+    // không COUNT, chỉ biết còn trang sau hay không
+    SLICE
+}
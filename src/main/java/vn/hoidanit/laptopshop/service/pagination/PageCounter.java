@@ -0,0 +1,138 @@
+package vn.hoidanit.laptopshop.service.pagination;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Tạo Page từ một query Slice (không COUNT) và tổng số dòng theo CountMode.
+ * Ở chế độ SLICE, tổng được tính giả = số dòng đến hết trang hiện tại (+1 nếu
+ * còn trang sau), nên các pager JSP dùng totalPages vẫn hiển thị đúng nút "tiếp".
+ * <p>
+ * Chế độ CACHED giữ tổng theo khóa: tên bảng (không lọc) hoặc "bảng?bộ lọc".
+ * Ghi trên node này cộng / trừ tổng không lọc và bỏ các tổng có lọc của bảng
+ * đó; ghi trên node khác (hoặc đơn hàng do node khác nhận) chỉ được thấy khi
+ * đếm lại sau pagination.count-ttl, lúc đó vẫn trả tổng cũ và đếm lại nền.
+ */
+@Component
+public class PageCounter {
+    private final CountMode mode;
+    private final ExecutorService countExecutor;
+    private final long ttlNanos;
+    private final int maxKeys;
+    // key: tên bảng (tổng không lọc) hoặc "bảng?bộ lọc"
+    private final Map<String, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+
+    public PageCounter(
+            @Value("${pagination.count-mode:EXACT}") CountMode mode,
+            @Value("${pagination.count-threads:4}") int countThreads,
+            @Value("${pagination.count-ttl:1m}") Duration ttl,
+            @Value("${pagination.count-cache.max-keys:1000}") int maxKeys) {
+        this.mode = mode;
+        this.ttlNanos = ttl.toNanos();
+        this.maxKeys = maxKeys;
+        AtomicInteger seq = new AtomicInteger();
+        this.countExecutor = Executors.newFixedThreadPool(countThreads, r -> {
+            Thread t = new Thread(r, "page-count-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.countExecutor.shutdown();
+    }
+
+    public CountMode getMode() {
+        return this.mode;
+    }
+
+    public <T> Page<T> page(String countKey, Pageable pageable, Function<Pageable, Slice<T>> contentQuery,
+            LongSupplier countQuery) {
+        switch (this.mode) {
+            case SLICE: {
+                Slice<T> slice = contentQuery.apply(pageable);
+                long total = pageable.getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+                return new PageImpl<>(slice.getContent(), pageable, total);
+            }
+            case CACHED: {
+                long total = this.cachedCount(countKey, countQuery);
+                Slice<T> slice = contentQuery.apply(pageable);
+                return new PageImpl<>(slice.getContent(), pageable, total);
+            }
+            default: {
+                CompletableFuture<Long> total = CompletableFuture.supplyAsync(countQuery::getAsLong,
+                        this.countExecutor);
+                Slice<T> slice = contentQuery.apply(pageable);
+                return new PageImpl<>(slice.getContent(), pageable, total.join());
+            }
+        }
+    }
+
+    public void recordInsert(String table) {
+        this.adjust(table, 1);
+    }
+
+    public void recordDelete(String table) {
+        this.adjust(table, -1);
+    }
+
+    private void adjust(String table, long delta) {
+        CachedCount total = this.cachedCounts.get(table);
+        if (total != null) {
+            total.value.addAndGet(delta);
+        }
+        // không biết dòng mới khớp bộ lọc nào: đếm lại các tổng có lọc khi cần
+        this.cachedCounts.keySet().removeIf(key -> key.startsWith(table + "?"));
+    }
+
+    private long cachedCount(String countKey, LongSupplier countQuery) {
+        CachedCount cached = this.cachedCounts.get(countKey);
+        if (cached == null) {
+            if (this.cachedCounts.size() >= this.maxKeys) {
+                // quá nhiều tổ hợp lọc: đếm thẳng, không giữ thêm khóa
+                return countQuery.getAsLong();
+            }
+            cached = this.cachedCounts.computeIfAbsent(countKey, k -> new CachedCount(countQuery.getAsLong()));
+        } else if (System.nanoTime() - cached.loadedAt > this.ttlNanos && cached.refreshing.compareAndSet(false, true)) {
+            CachedCount stale = cached;
+            CompletableFuture.runAsync(() -> {
+                try {
+                    stale.value.set(countQuery.getAsLong());
+                    stale.loadedAt = System.nanoTime();
+                } finally {
+                    stale.refreshing.set(false);
+                }
+            }, this.countExecutor);
+        }
+        return cached.value.get();
+    }
+
+    private static final class CachedCount {
+        private final AtomicLong value;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long loadedAt = System.nanoTime();
+
+        CachedCount(long value) {
+            this.value = new AtomicLong(value);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package vn.hoidanit.laptopshop.service.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import vn.hoidanit.laptopshop.domain.Product_;
+
+/**
+ * Mã hóa vị trí keyset (price, id) kèm chiều sắp xếp của từng khóa thành chuỗi
+ * base64 để đặt lên query string, vd. "price:desc=1500.0;id:desc=42". Token sai
+ * định dạng hoặc không khớp với cách sắp xếp hiện tại (khóa, thứ tự khóa hoặc
+ * chiều) thì coi như trang đầu.
+ */
+public final class ProductCursor {
+    // token cho trang đầu tiên ở chế độ cursor
+    public static final String FIRST = "first";
+
+    private ProductCursor() {
+    }
+
+    public static String encode(ScrollPosition position, Sort sort) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.getKeys().isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> key : keyset.getKeys().entrySet()) {
+            Sort.Order order = sort.getOrderFor(key.getKey());
+            if (order == null) {
+                return "";
+            }
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(key.getKey()).append(':').append(order.isAscending() ? "asc" : "desc")
+                    .append('=').append(key.getValue());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetScrollPosition decode(String token, Sort sort) {
+        if (token == null || token.isBlank() || token.equals(FIRST)) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(";");
+            List<Sort.Order> orders = sort.toList();
+            if (parts.length != orders.size()) {
+                return ScrollPosition.keyset();
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                int colon = part.indexOf(':');
+                int eq = part.indexOf('=');
+                String name = part.substring(0, colon);
+                String direction = part.substring(colon + 1, eq);
+                String value = part.substring(eq + 1);
+                // khóa và chiều phải khớp đúng vị trí trong sort hiện tại
+                Sort.Order order = orders.get(i);
+                if (!order.getProperty().equals(name)
+                        || !direction.equals(order.isAscending() ? "asc" : "desc")) {
+                    return ScrollPosition.keyset();
+                }
+                if (name.equals(Product_.PRICE)) {
+                    keys.put(name, Double.valueOf(value));
+                } else if (name.equals(Product_.ID)) {
+                    keys.put(name, Long.valueOf(value));
+                } else {
+                    return ScrollPosition.keyset();
+                }
+            }
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException e) {
+            return ScrollPosition.keyset();
+        }
+    }
+}
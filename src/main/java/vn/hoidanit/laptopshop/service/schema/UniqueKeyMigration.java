@@ -0,0 +1,130 @@
+package vn.hoidanit.laptopshop.service.schema;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * ddl-auto=update chỉ ghi log rồi bỏ qua khi không thêm được unique key (bảng
+ * đã có dòng trùng), trong khi giỏ hàng dựa vào uk_carts_user và
+ * uk_cart_detail_cart_product cho INSERT ... ON DUPLICATE KEY UPDATE. Khi khởi
+ * động, nếu thiếu key thì gộp các dòng trùng rồi thêm key; không thêm được thì
+ * dừng khởi động.
+ * <p>
+ * Chạy trên một connection giữ GET_LOCK để nhiều node khởi động cùng lúc không
+ * gộp chồng lên nhau; không lấy được lock sau 60s thì dừng khởi động chứ không
+ * gộp khi không có lock. Phụ thuộc EntityManagerFactory để chạy sau ddl-auto.
+ */
+@Component
+public class UniqueKeyMigration {
+    private static final Logger log = LoggerFactory.getLogger(UniqueKeyMigration.class);
+
+    private static final String LOCK_NAME = "laptopshop_unique_keys";
+    private static final String HAS_INDEX = "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+
+    // carts trùng user_id: chuyển dòng sang giỏ có id nhỏ nhất rồi xóa giỏ thừa
+    private static final String[] DEDUP_CARTS = {
+            "UPDATE cart_detail cd JOIN carts c ON c.id = cd.cart_id "
+                    + "JOIN (SELECT user_id, MIN(id) AS keep_id FROM carts GROUP BY user_id HAVING COUNT(*) > 1) d "
+                    + "ON d.user_id = c.user_id AND c.id <> d.keep_id SET cd.cart_id = d.keep_id",
+            "DELETE c FROM carts c JOIN carts k ON k.user_id = c.user_id AND k.id < c.id" };
+    // cart_detail trùng (cart_id, product_id): cộng số lượng vào dòng id nhỏ nhất, xóa phần còn lại
+    private static final String[] DEDUP_CART_DETAIL = {
+            "UPDATE cart_detail cd JOIN (SELECT MIN(id) AS keep_id, SUM(quantity) AS total FROM cart_detail "
+                    + "GROUP BY cart_id, product_id HAVING COUNT(*) > 1) d ON cd.id = d.keep_id "
+                    + "SET cd.quantity = d.total",
+            "DELETE cd FROM cart_detail cd JOIN cart_detail k ON k.cart_id = cd.cart_id "
+                    + "AND k.product_id = cd.product_id AND k.id < cd.id",
+            "UPDATE carts c SET c.sum = (SELECT COUNT(*) FROM cart_detail cd WHERE cd.cart_id = c.id)" };
+
+    public UniqueKeyMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!lock(connection)) {
+                // node khác vẫn đang gộp: khởi động lại sau khi nó xong, không gộp chồng lên
+                throw new IllegalStateException("could not take " + LOCK_NAME + " lock, another node is still "
+                        + "merging duplicate cart rows");
+            }
+            try {
+                if (!hasIndex(connection, "carts", "uk_carts_user")
+                        && hasIndex(connection, "cart_detail", "uk_cart_detail_cart_product")) {
+                    // gộp giỏ trùng có thể tạo dòng trùng (cart_id, product_id): bỏ key, gộp xong thêm lại bên dưới
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("ALTER TABLE cart_detail DROP INDEX uk_cart_detail_cart_product");
+                    }
+                }
+                ensureKey(connection, "carts", "uk_carts_user", "user_id", DEDUP_CARTS);
+                ensureKey(connection, "cart_detail", "uk_cart_detail_cart_product", "cart_id, product_id",
+                        DEDUP_CART_DETAIL);
+            } finally {
+                unlock(connection);
+            }
+            return null;
+        });
+    }
+
+    private static void ensureKey(Connection connection, String table, String key, String columns, String[] dedup)
+            throws SQLException {
+        if (hasIndex(connection, table, key)) {
+            return;
+        }
+        log.warn("unique key {} missing on {}, merging duplicate rows", key, table);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            int merged = 0;
+            for (String sql : dedup) {
+                merged += statement.executeUpdate(sql);
+            }
+            connection.commit();
+            log.info("{} rows touched while merging duplicates on {}", merged, table);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + key + " UNIQUE (" + columns + ")");
+        } catch (SQLException e) {
+            throw new IllegalStateException("cannot add unique key " + key + " on " + table, e);
+        }
+        log.info("unique key {} added on {}", key, table);
+    }
+
+    private static boolean hasIndex(Connection connection, String table, String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(HAS_INDEX)) {
+            statement.setString(1, table);
+            statement.setString(2, key);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getLong(1) > 0;
+            }
+        }
+    }
+
+    private static boolean lock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+}
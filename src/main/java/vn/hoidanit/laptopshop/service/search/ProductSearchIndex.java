@@ -0,0 +1,243 @@
+package vn.hoidanit.laptopshop.service.search;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+import vn.hoidanit.laptopshop.service.catalog.CatalogChangedEvent;
+
+/**
+ * Inverted index trên name / shortDesc / detailDesc, xếp hạng theo BM25. Tên
+ * sản phẩm có trọng số cao hơn mô tả. Cập nhật từng sản phẩm khi thêm / sửa /
+ * xóa, không cần build lại toàn bộ. Thay đổi từ node khác được đọc khi
+ * {@link CatalogChangedEvent} báo stamp đổi: chỉ các sản phẩm có updated_at
+ * mới hơn lần đọc trước, cộng danh sách id để bỏ sản phẩm đã xóa.
+ */
+@Service
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int SHORT_DESC_WEIGHT = 2;
+    private static final int DETAIL_DESC_WEIGHT = 1;
+    // đọc lùi lại một chút: lần sửa có updated_at cũ hơn nhưng commit muộn hơn vẫn được đọc
+    private static final Duration LATE_COMMIT_MARGIN = Duration.ofSeconds(5);
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (product id -> tần suất có trọng số)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // product id -> các term của sản phẩm, dùng khi xóa / cập nhật
+    private final Map<Long, Set<String>> docTerms = new HashMap<>();
+    private final Map<Long, Integer> docLength = new HashMap<>();
+    private long totalLength = 0;
+    // updated_at lớn nhất đã đọc vào index, null nếu chưa build
+    private Instant indexedUpTo;
+    private volatile boolean ready = false;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        Instant since = this.indexedUpTo;
+        if (!this.ready || since == null) {
+            this.rebuild(event.stamp().lastUpdated());
+        } else {
+            this.catchUp(since.minus(LATE_COMMIT_MARGIN), event.stamp().lastUpdated());
+        }
+    }
+
+    private void rebuild(Instant upTo) {
+        List<SearchDocument> documents = this.productRepository.findAllSearchDocuments();
+        this.lock.writeLock().lock();
+        try {
+            this.postings.clear();
+            this.docTerms.clear();
+            this.docLength.clear();
+            this.totalLength = 0;
+            for (SearchDocument document : documents) {
+                this.add(document);
+            }
+            this.indexedUpTo = upTo;
+            this.ready = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void catchUp(Instant since, Instant upTo) {
+        List<SearchDocument> changed = this.productRepository.findSearchDocumentsUpdatedSince(since);
+        Set<Long> ids = new HashSet<>(this.productRepository.findAllIds());
+        this.lock.writeLock().lock();
+        try {
+            for (Long id : new ArrayList<>(this.docTerms.keySet())) {
+                if (!ids.contains(id)) {
+                    this.removeInternal(id);
+                }
+            }
+            for (SearchDocument document : changed) {
+                this.removeInternal(document.id());
+                this.add(document);
+            }
+            if (upTo != null && upTo.isAfter(this.indexedUpTo)) {
+                this.indexedUpTo = upTo;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    public void index(Product product) {
+        SearchDocument document = new SearchDocument(product.getId(), product.getName(), product.getShortDesc(),
+                product.getDetailDesc());
+        this.lock.writeLock().lock();
+        try {
+            this.removeInternal(document.id());
+            this.add(document);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        this.lock.writeLock().lock();
+        try {
+            this.removeInternal(id);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void add(SearchDocument document) {
+        Map<String, Integer> tf = new HashMap<>();
+        int length = 0;
+        length += addField(tf, document.name(), NAME_WEIGHT);
+        length += addField(tf, document.shortDesc(), SHORT_DESC_WEIGHT);
+        length += addField(tf, document.detailDesc(), DETAIL_DESC_WEIGHT);
+
+        for (Map.Entry<String, Integer> entry : tf.entrySet()) {
+            this.postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(document.id(), entry.getValue());
+        }
+        this.docTerms.put(document.id(), tf.keySet());
+        this.docLength.put(document.id(), length);
+        this.totalLength += length;
+    }
+
+    private static int addField(Map<String, Integer> tf, String text, int weight) {
+        List<String> tokens = VietnameseTokenizer.tokenize(text);
+        for (String token : tokens) {
+            tf.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    private void removeInternal(long id) {
+        Set<String> terms = this.docTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = this.postings.get(term);
+            if (docs != null) {
+                docs.remove(id);
+                if (docs.isEmpty()) {
+                    this.postings.remove(term);
+                }
+            }
+        }
+        Integer length = this.docLength.remove(id);
+        if (length != null) {
+            this.totalLength -= length;
+        }
+    }
+
+    private static double idf(int n, int df) {
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    private double termScore(double idf, double tf, long id, double avgLength) {
+        double norm = 1 - B + B * this.docLength.get(id) / avgLength;
+        return idf * tf * (K1 + 1) / (tf + K1 * norm);
+    }
+
+    /**
+     * Trả về các sản phẩm chứa tất cả các từ trong câu tìm kiếm và thỏa filter,
+     * sắp theo điểm BM25 giảm dần.
+     */
+    public List<SearchHit> search(String query, LongPredicate filter) {
+        Set<String> terms = new LinkedHashSet<>(VietnameseTokenizer.tokenize(query));
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        this.lock.readLock().lock();
+        try {
+            int n = this.docLength.size();
+            double avgLength = n == 0 ? 1 : (double) this.totalLength / n;
+
+            // duyệt từ hiếm nhất trước để tập ứng viên nhỏ nhất có thể
+            List<Map<Long, Integer>> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, Integer> docs = this.postings.get(term);
+                if (docs == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(docs);
+            }
+            lists.sort(Comparator.comparingInt(Map::size));
+
+            Map<Long, Integer> rarest = lists.get(0);
+            double idf = idf(n, rarest.size());
+            for (Map.Entry<Long, Integer> doc : rarest.entrySet()) {
+                if (filter.test(doc.getKey())) {
+                    scores.put(doc.getKey(), this.termScore(idf, doc.getValue(), doc.getKey(), avgLength));
+                }
+            }
+            // các từ còn lại: chỉ xét những sản phẩm còn trong tập ứng viên
+            for (int i = 1; i < lists.size() && !scores.isEmpty(); i++) {
+                Map<Long, Integer> docs = lists.get(i);
+                double termIdf = idf(n, docs.size());
+                Map<Long, Double> next = new HashMap<>();
+                for (Map.Entry<Long, Double> candidate : scores.entrySet()) {
+                    Integer tf = docs.get(candidate.getKey());
+                    if (tf != null) {
+                        next.put(candidate.getKey(),
+                                candidate.getValue() + this.termScore(termIdf, tf, candidate.getKey(), avgLength));
+                    }
+                }
+                scores = next;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        List<SearchHit> hits = new ArrayList<>(scores.size());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            hits.add(new SearchHit(entry.getKey(), entry.getValue()));
+        }
+        hits.sort(Comparator.comparingDouble(SearchHit::score).reversed().thenComparingLong(SearchHit::id));
+        return hits;
+    }
+}
@@ -0,0 +1,154 @@
+package vn.hoidanit.laptopshop.service.search;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+import vn.hoidanit.laptopshop.service.stock.ProductsSoldEvent;
+
+/**
+ * Gợi ý tên sản phẩm theo tiền tố cho ô tìm kiếm, ưu tiên sản phẩm bán chạy.
+ * Lúc tra cứu không đụng tới DB.
+ * <p>
+ * Bán hàng trên node này (ProductsSoldEvent sau khi commit) và sản phẩm mới chỉ
+ * cập nhật các node trie trên đường đi của tên sản phẩm. Đổi tên, xóa hoặc sold
+ * giảm thì build lại cả trie (chỉ xảy ra ở trang admin). Bán hàng trên node
+ * khác được đọc lại mỗi search.suggest.refresh-interval.
+ */
+@Service
+public class ProductSuggester {
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggester.class);
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final ProductRepository productRepository;
+    private final long refreshIntervalMillis;
+    private final Map<Long, Suggestion> entries = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile SuggestTrie trie = SuggestTrie.EMPTY;
+
+    public ProductSuggester(ProductRepository productRepository,
+            @Value("${search.suggest.refresh-interval:5m}") Duration refreshInterval) {
+        this.productRepository = productRepository;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "suggest-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.refresh();
+        this.scheduler.scheduleWithFixedDelay(this::refreshSafely, this.refreshIntervalMillis,
+                this.refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    /**
+     * Đọc lại (id, name, sold) của mọi sản phẩm và chỉ cập nhật sản phẩm mới hoặc
+     * có sold tăng. sold trong DB nhỏ hơn bản trong bộ nhớ là do đọc trước khi
+     * event bán hàng được áp dụng, giữ bản trong bộ nhớ.
+     */
+    public void refresh() {
+        Map<Long, Suggestion> fresh = new HashMap<>();
+        for (Suggestion row : this.productRepository.findAllSuggestions()) {
+            fresh.put(row.id(), row);
+        }
+        synchronized (this) {
+            SuggestTrie next = this.trie;
+            // sản phẩm bị xóa ở node khác
+            boolean rebuild = !fresh.keySet().containsAll(this.entries.keySet());
+            for (Map.Entry<Long, Suggestion> entry : fresh.entrySet()) {
+                if (rebuild) {
+                    break;
+                }
+                Suggestion row = entry.getValue();
+                Suggestion previous = this.entries.get(row.id());
+                if (previous != null && previous.name().equals(row.name()) && row.sold() <= previous.sold()) {
+                    entry.setValue(previous);
+                } else if (isIncremental(previous, row)) {
+                    next = next.with(row, MAX_SUGGESTIONS);
+                } else {
+                    rebuild = true;
+                }
+            }
+            if (rebuild) {
+                next = SuggestTrie.build(fresh.values(), MAX_SUGGESTIONS);
+            }
+            this.entries.clear();
+            this.entries.putAll(fresh);
+            this.trie = next;
+        }
+    }
+
+    @TransactionalEventListener
+    public synchronized void onProductsSold(ProductsSoldEvent event) {
+        SuggestTrie next = this.trie;
+        for (Map.Entry<Long, Long> sold : event.quantities().entrySet()) {
+            Suggestion previous = this.entries.get(sold.getKey());
+            if (previous == null || sold.getValue() <= 0) {
+                continue;
+            }
+            Suggestion updated = new Suggestion(previous.id(), previous.name(), previous.sold() + sold.getValue());
+            this.entries.put(updated.id(), updated);
+            next = next.with(updated, MAX_SUGGESTIONS);
+        }
+        this.trie = next;
+    }
+
+    public synchronized void upsert(Product product) {
+        Suggestion updated = new Suggestion(product.getId(), product.getName(), product.getSold());
+        Suggestion previous = this.entries.put(product.getId(), updated);
+        if (isIncremental(previous, updated)) {
+            this.trie = this.trie.with(updated, MAX_SUGGESTIONS);
+        } else {
+            this.trie = SuggestTrie.build(this.entries.values(), MAX_SUGGESTIONS);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        if (this.entries.remove(id) != null) {
+            this.trie = SuggestTrie.build(this.entries.values(), MAX_SUGGESTIONS);
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        List<Suggestion> top = this.trie.lookup(SuggestTrie.normalize(prefix));
+        return limit >= top.size() ? top : top.subList(0, Math.max(limit, 0));
+    }
+
+    // trie.with chỉ đúng khi tên giữ nguyên và sold không giảm
+    private static boolean isIncremental(Suggestion previous, Suggestion updated) {
+        return previous == null
+                || (previous.name().equals(updated.name()) && updated.sold() >= previous.sold());
+    }
+
+    private void refreshSafely() {
+        try {
+            this.refresh();
+        } catch (RuntimeException e) {
+            log.warn("suggestion refresh failed, will retry", e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package vn.hoidanit.laptopshop.service.search;
+
+public record SearchDocument(long id, String name, String shortDesc, String detailDesc) {
+}
@@ -0,0 +1,4 @@
+package vn.hoidanit.laptopshop.service.search;
+
+public record SearchHit(long id, double score) {
+}
@@ -0,0 +1,196 @@
+package vn.hoidanit.laptopshop.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie bất biến cho gợi ý tìm kiếm. Mỗi node lưu sẵn top-N sản phẩm bán chạy
+ * nhất có tên bắt đầu bằng tiền tố đó (tính cả từ đầu mỗi chữ trong tên), nên
+ * một lần tra cứu chỉ là đi xuống trie, không tạo object mới.
+ * <p>
+ * Cập nhật một sản phẩm (with) chép lại các node trên đường đi của tên sản
+ * phẩm, phần còn lại dùng chung với trie cũ. Chỉ đúng khi sold không giảm và
+ * tên không đổi, các trường hợp khác phải build lại.
+ */
+final class SuggestTrie {
+    private static final Node EMPTY_NODE = new Node(new char[0], new Node[0], List.of());
+    static final SuggestTrie EMPTY = new SuggestTrie(EMPTY_NODE);
+    // sold giảm dần, cùng sold thì id tăng dần
+    private static final Comparator<Suggestion> ORDER = Comparator.comparingLong(Suggestion::sold).reversed()
+            .thenComparingLong(Suggestion::id);
+
+    private final Node root;
+
+    private SuggestTrie(Node root) {
+        this.root = root;
+    }
+
+    static SuggestTrie build(Collection<Suggestion> suggestions, int topN) {
+        List<Suggestion> ordered = new ArrayList<>(suggestions);
+        // chèn theo sold giảm dần: mỗi node chỉ cần lấy topN sản phẩm đầu tiên đi qua
+        ordered.sort(ORDER);
+
+        Builder root = new Builder();
+        for (Suggestion suggestion : ordered) {
+            String key = normalize(suggestion.name());
+            for (int start = 0; start < key.length(); start++) {
+                if (start == 0 || key.charAt(start - 1) == ' ') {
+                    root.insert(key, start, suggestion, topN);
+                }
+            }
+        }
+        return new SuggestTrie(root.freeze());
+    }
+
+    // sản phẩm mới hoặc sold tăng: xếp lại top-N của các node trên đường đi
+    SuggestTrie with(Suggestion suggestion, int topN) {
+        String key = normalize(suggestion.name());
+        Node root = this.root;
+        for (int start = 0; start < key.length(); start++) {
+            if (start == 0 || key.charAt(start - 1) == ' ') {
+                root = put(root, key, start, suggestion, topN);
+            }
+        }
+        return root == this.root ? this : new SuggestTrie(root);
+    }
+
+    // node ứng với tiền tố key[.., i): trả về bản sao có con key[i] đã cập nhật
+    private static Node put(Node node, String key, int i, Suggestion suggestion, int topN) {
+        if (i == key.length()) {
+            return node;
+        }
+        char c = key.charAt(i);
+        int idx = Arrays.binarySearch(node.labels, c);
+        Node child = idx >= 0 ? node.children[idx] : EMPTY_NODE;
+        Node offered = new Node(child.labels, child.children, offer(child.top, suggestion, topN));
+        return node.withChild(idx, c, put(offered, key, i + 1, suggestion, topN));
+    }
+
+    private static List<Suggestion> offer(List<Suggestion> top, Suggestion suggestion, int topN) {
+        List<Suggestion> next = new ArrayList<>(top.size() + 1);
+        boolean placed = false;
+        for (Suggestion current : top) {
+            if (current.id() == suggestion.id()) {
+                continue;
+            }
+            if (!placed && ORDER.compare(suggestion, current) < 0) {
+                next.add(suggestion);
+                placed = true;
+            }
+            next.add(current);
+        }
+        if (!placed) {
+            next.add(suggestion);
+        }
+        return List.copyOf(next.size() > topN ? next.subList(0, topN) : next);
+    }
+
+    static String normalize(String text) {
+        String folded = VietnameseTokenizer.fold(text);
+        StringBuilder sb = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    List<Suggestion> lookup(String normalizedPrefix) {
+        if (normalizedPrefix.isEmpty()) {
+            return List.of();
+        }
+        Node node = this.root;
+        for (int i = 0; i < normalizedPrefix.length() && node != null; i++) {
+            node = node.child(normalizedPrefix.charAt(i));
+        }
+        return node == null ? List.of() : node.top;
+    }
+
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final List<Suggestion> top;
+
+        Node(char[] labels, Node[] children, List<Suggestion> top) {
+            this.labels = labels;
+            this.children = children;
+            this.top = top;
+        }
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(this.labels, c);
+            return idx < 0 ? null : this.children[idx];
+        }
+
+        // idx: kết quả binarySearch của c trong labels
+        Node withChild(int idx, char c, Node child) {
+            if (idx >= 0) {
+                Node[] children = this.children.clone();
+                children[idx] = child;
+                return new Node(this.labels, children, this.top);
+            }
+            int at = -(idx + 1);
+            char[] labels = new char[this.labels.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.labels, 0, labels, 0, at);
+            System.arraycopy(this.children, 0, children, 0, at);
+            labels[at] = c;
+            children[at] = child;
+            System.arraycopy(this.labels, at, labels, at + 1, this.labels.length - at);
+            System.arraycopy(this.children, at, children, at + 1, this.children.length - at);
+            return new Node(labels, children, this.top);
+        }
+    }
+
+    private static final class Builder {
+        private final Map<Character, Builder> children = new HashMap<>();
+        private final List<Suggestion> top = new ArrayList<>(2);
+
+        void insert(String key, int from, Suggestion suggestion, int topN) {
+            Builder node = this;
+            for (int i = from; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Builder());
+                node.offer(suggestion, topN);
+            }
+        }
+
+        private void offer(Suggestion suggestion, int topN) {
+            if (this.top.size() >= topN) {
+                return;
+            }
+            // cùng một sản phẩm có thể đi qua node nhiều lần (vd: "dell ... dell")
+            Suggestion last = this.top.isEmpty() ? null : this.top.get(this.top.size() - 1);
+            if (last == null || last.id() != suggestion.id()) {
+                this.top.add(suggestion);
+            }
+        }
+
+        Node freeze() {
+            char[] labels = new char[this.children.size()];
+            int i = 0;
+            for (Character c : this.children.keySet()) {
+                labels[i++] = c;
+            }
+            Arrays.sort(labels);
+            Node[] frozen = new Node[labels.length];
+            for (int j = 0; j < labels.length; j++) {
+                frozen[j] = this.children.get(labels[j]).freeze();
+            }
+            return new Node(labels, frozen, List.copyOf(this.top));
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package vn.hoidanit.laptopshop.service.search;
+
+public record Suggestion(long id, String name, long sold) {
+}
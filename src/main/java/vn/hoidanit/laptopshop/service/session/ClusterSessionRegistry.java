@@ -0,0 +1,175 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+
+/**
+ * SessionRegistry dùng chung cho mọi node, dựa trên chỉ mục PRINCIPAL_NAME của
+ * spring-session-jdbc thay vì map trong bộ nhớ của từng node.
+ * <ul>
+ * <li>getAllSessions (chỉ gọi lúc đăng nhập): query theo principal.</li>
+ * <li>getSessionInformation (mọi request, từ ConcurrentSessionFilter): đọc qua
+ * near cache của TieredSessionRepository, không query DB.</li>
+ * <li>expireNow: đặt cờ hết hạn vào session, tăng LAST_ACCESS_TIME và ghi ngay;
+ * node hiện tại thấy ngay qua cache local, node khác thấy sau lần revalidate
+ * kế tiếp (revalidate so cả version lẫn cờ hết hạn trong DB, nên lần flush
+ * write-behind của node khác không che mất cờ).</li>
+ * </ul>
+ */
+public class ClusterSessionRegistry implements SessionRegistry {
+    public static final String EXPIRED_ATTRIBUTE = ClusterSessionRegistry.class.getName() + ".EXPIRED";
+
+    private final FindByIndexNameSessionRepository<Session> sessionRepository;
+    // session id -> thời điểm bị đánh dấu hết hạn trên node này
+    private final Map<String, Long> expiredLocally = new ConcurrentHashMap<>();
+    private final long expiredRetentionMillis;
+
+    @SuppressWarnings("unchecked")
+    public ClusterSessionRegistry(FindByIndexNameSessionRepository<? extends Session> sessionRepository,
+            Duration expiredRetention) {
+        this.sessionRepository = (FindByIndexNameSessionRepository<Session>) sessionRepository;
+        this.expiredRetentionMillis = expiredRetention.toMillis();
+    }
+
+    // danh sách toàn bộ principal không có chỉ mục, giống SpringSessionBackedSessionRegistry
+    @Override
+    public List<Object> getAllPrincipals() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        Map<String, ? extends Session> sessions = this.sessionRepository.findByPrincipalName(name(principal));
+        List<SessionInformation> infos = new ArrayList<>(sessions.size());
+        for (Session session : sessions.values()) {
+            SessionInformation info = this.toInformation(principal, session);
+            if (includeExpiredSessions || !info.isExpired()) {
+                infos.add(info);
+            }
+        }
+        return infos;
+    }
+
+    @Override
+    public SessionInformation getSessionInformation(String sessionId) {
+        Session session = this.sessionRepository.findById(sessionId);
+        if (session == null) {
+            return null;
+        }
+        return this.toInformation(principalName(session), session);
+    }
+
+    // vòng đời session do spring-session quản lý, registry không cần lưu gì thêm
+    @Override
+    public void refreshLastRequest(String sessionId) {
+    }
+
+    @Override
+    public void registerNewSession(String sessionId, Object principal) {
+    }
+
+    @Override
+    public void removeSessionInformation(String sessionId) {
+        this.expiredLocally.remove(sessionId);
+    }
+
+    private SessionInformation toInformation(Object principal, Session session) {
+        return new ClusterSessionInformation(principal, session.getId(), Date.from(session.getLastAccessedTime()),
+                this.isExpired(session));
+    }
+
+    private boolean isExpired(Session session) {
+        Long expiredAt = this.expiredLocally.get(session.getId());
+        if (expiredAt != null) {
+            return true;
+        }
+        return Boolean.TRUE.equals(session.getAttribute(EXPIRED_ATTRIBUTE));
+    }
+
+    private void markExpired(String sessionId) {
+        long now = System.currentTimeMillis();
+        this.expiredLocally.put(sessionId, now);
+        this.purgeExpiredMarks(now);
+
+        Session session = this.sessionRepository.findById(sessionId);
+        if (session != null) {
+            session.setAttribute(EXPIRED_ATTRIBUTE, Boolean.TRUE);
+            // ghi riêng một thuộc tính không đổi LAST_ACCESS_TIME: tăng version để node khác
+            // đang giữ bản sạch trong near cache nạp lại ở lần revalidate kế tiếp
+            Instant bumped = Instant.ofEpochMilli(session.getLastAccessedTime().toEpochMilli() + 1);
+            session.setLastAccessedTime(bumped.isAfter(Instant.now()) ? bumped : Instant.now());
+            this.sessionRepository.save(session);
+            if (this.sessionRepository instanceof TieredSessionRepository tiered) {
+                tiered.flushNow(sessionId);
+            }
+        }
+    }
+
+    private void purgeExpiredMarks(long now) {
+        Iterator<Long> it = this.expiredLocally.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next() > this.expiredRetentionMillis) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String principalName(Session session) {
+        String name = session.getAttribute(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME);
+        if (name != null) {
+            return name;
+        }
+        SecurityContext context = session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        return context == null || context.getAuthentication() == null ? null : context.getAuthentication().getName();
+    }
+
+    private static String name(Object principal) {
+        if (principal instanceof UserDetails userDetails) {
+            return userDetails.getUsername();
+        }
+        if (principal instanceof AuthenticatedPrincipal authenticated) {
+            return authenticated.getName();
+        }
+        if (principal instanceof Authentication authentication) {
+            return authentication.getName();
+        }
+        return principal.toString();
+    }
+
+    private final class ClusterSessionInformation extends SessionInformation {
+        private static final long serialVersionUID = 1L;
+
+        ClusterSessionInformation(Object principal, String sessionId, Date lastRequest, boolean expired) {
+            super(principal, sessionId, lastRequest);
+            if (expired) {
+                // đã hết hạn sẵn: chỉ đặt cờ, không ghi lại vào store
+                super.expireNow();
+            }
+        }
+
+        @Override
+        public void expireNow() {
+            if (!this.isExpired()) {
+                super.expireNow();
+                ClusterSessionRegistry.this.markExpired(this.getSessionId());
+            }
+        }
+    }
+}
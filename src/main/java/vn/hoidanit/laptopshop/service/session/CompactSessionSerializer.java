@@ -0,0 +1,148 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Serialize thuộc tính session cho spring-session-jdbc. Các kiểu hay dùng
+ * (String, số, Boolean, SessionPrincipal) ghi dạng nhị phân gọn: 1 byte tag +
+ * dữ liệu. Kiểu khác (SecurityContext, CSRF token...) vẫn dùng Java
+ * serialization; dữ liệu cũ trong DB bắt đầu bằng magic 0xACED nên vẫn đọc
+ * được.
+ */
+public class CompactSessionSerializer {
+    private static final Logger log = LoggerFactory.getLogger(CompactSessionSerializer.class);
+
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_PRINCIPAL = 5;
+    private static final byte JAVA_MAGIC_0 = (byte) 0xAC;
+    private static final byte JAVA_MAGIC_1 = (byte) 0xED;
+    // writeUTF giới hạn 65535 byte
+    private static final int MAX_UTF_CHARS = 65535 / 3;
+
+    private final SerializingConverter javaSerializer = new SerializingConverter();
+    private final DeserializingConverter javaDeserializer;
+    private final int maxBytes;
+    private final DistributionSummary compactBytes;
+    private final DistributionSummary javaBytes;
+    private final Counter overBudget;
+    private final AtomicLong overBudgetLogged = new AtomicLong();
+
+    public CompactSessionSerializer(ClassLoader classLoader, int maxBytes, MeterRegistry meterRegistry) {
+        this.javaDeserializer = new DeserializingConverter(classLoader);
+        this.maxBytes = maxBytes;
+        this.compactBytes = DistributionSummary.builder("session.attribute.bytes").baseUnit("bytes")
+                .tag("encoding", "compact").register(meterRegistry);
+        this.javaBytes = DistributionSummary.builder("session.attribute.bytes").baseUnit("bytes")
+                .tag("encoding", "java").register(meterRegistry);
+        this.overBudget = Counter.builder("session.attribute.over.budget").register(meterRegistry);
+    }
+
+    public byte[] serialize(Object value) {
+        byte[] bytes = this.writeCompact(value);
+        if (bytes != null) {
+            this.compactBytes.record(bytes.length);
+        } else {
+            bytes = this.javaSerializer.convert(value);
+            this.javaBytes.record(bytes.length);
+        }
+        if (bytes.length > this.maxBytes) {
+            this.overBudget.increment();
+            // chỉ log vài lần đầu để không làm ngập log
+            if (this.overBudgetLogged.incrementAndGet() <= 10) {
+                log.warn("session attribute of type {} is {} bytes, budget is {}", value.getClass().getName(),
+                        bytes.length, this.maxBytes);
+            }
+        }
+        return bytes;
+    }
+
+    public Object deserialize(byte[] bytes) {
+        if (bytes.length >= 2 && bytes[0] == JAVA_MAGIC_0 && bytes[1] == JAVA_MAGIC_1) {
+            return this.javaDeserializer.convert(bytes);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte tag = in.readByte();
+            switch (tag) {
+                case TAG_STRING:
+                    return in.readUTF();
+                case TAG_INT:
+                    return in.readInt();
+                case TAG_LONG:
+                    return in.readLong();
+                case TAG_BOOLEAN:
+                    return in.readBoolean();
+                case TAG_PRINCIPAL:
+                    return new SessionPrincipal(in.readLong(), readNullable(in), readNullable(in), readNullable(in));
+                default:
+                    throw new IllegalStateException("unknown session attribute tag " + tag);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null nếu kiểu không hỗ trợ dạng gọn
+    private byte[] writeCompact(Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            if (value instanceof String s && s.length() <= MAX_UTF_CHARS) {
+                out.writeByte(TAG_STRING);
+                out.writeUTF(s);
+            } else if (value instanceof Integer i) {
+                out.writeByte(TAG_INT);
+                out.writeInt(i);
+            } else if (value instanceof Long l) {
+                out.writeByte(TAG_LONG);
+                out.writeLong(l);
+            } else if (value instanceof Boolean b) {
+                out.writeByte(TAG_BOOLEAN);
+                out.writeBoolean(b);
+            } else if (value instanceof SessionPrincipal p && fits(p.getEmail()) && fits(p.getFullName())
+                    && fits(p.getAvatar())) {
+                out.writeByte(TAG_PRINCIPAL);
+                out.writeLong(p.getId());
+                writeNullable(out, p.getEmail());
+                writeNullable(out, p.getFullName());
+                writeNullable(out, p.getAvatar());
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static boolean fits(String s) {
+        return s == null || s.length() <= MAX_UTF_CHARS;
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
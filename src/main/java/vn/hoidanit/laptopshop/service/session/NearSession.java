@@ -0,0 +1,121 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import org.springframework.session.Session;
+
+/**
+ * Session nằm trong near cache của TieredSessionRepository. Bọc session của
+ * JDBC (giữ nguyên cơ chế ghi delta của nó) và đồng bộ mọi truy cập vì cùng
+ * một object được dùng chung giữa các request song song và thread flush.
+ */
+public class NearSession implements Session {
+    private final Session delegate;
+    // id lúc nạp / lưu lần cuối, là khóa trong near cache
+    private String cachedId;
+    private boolean persisted;
+    // LAST_ACCESS_TIME đang nằm trong DB theo hiểu biết của node này
+    private long persistedVersion;
+    private long checkedAt;
+
+    NearSession(Session delegate, boolean persisted) {
+        this.delegate = delegate;
+        this.cachedId = delegate.getId();
+        this.persisted = persisted;
+        this.persistedVersion = persisted ? delegate.getLastAccessedTime().toEpochMilli() : 0;
+        this.checkedAt = System.nanoTime();
+    }
+
+    Session getDelegate() {
+        return this.delegate;
+    }
+
+    synchronized String getCachedId() {
+        return this.cachedId;
+    }
+
+    synchronized boolean needsSyncSave() {
+        return !this.persisted || !this.cachedId.equals(this.delegate.getId());
+    }
+
+    synchronized long getPersistedVersion() {
+        return this.persistedVersion;
+    }
+
+    synchronized long getCheckedAt() {
+        return this.checkedAt;
+    }
+
+    synchronized void markChecked() {
+        this.checkedAt = System.nanoTime();
+    }
+
+    synchronized void markPersisted() {
+        this.cachedId = this.delegate.getId();
+        this.persisted = true;
+        this.persistedVersion = this.delegate.getLastAccessedTime().toEpochMilli();
+        this.checkedAt = System.nanoTime();
+    }
+
+    @Override
+    public synchronized String getId() {
+        return this.delegate.getId();
+    }
+
+    @Override
+    public synchronized String changeSessionId() {
+        return this.delegate.changeSessionId();
+    }
+
+    @Override
+    public synchronized <T> T getAttribute(String attributeName) {
+        return this.delegate.getAttribute(attributeName);
+    }
+
+    @Override
+    public synchronized Set<String> getAttributeNames() {
+        return Set.copyOf(this.delegate.getAttributeNames());
+    }
+
+    @Override
+    public synchronized void setAttribute(String attributeName, Object attributeValue) {
+        this.delegate.setAttribute(attributeName, attributeValue);
+    }
+
+    @Override
+    public synchronized void removeAttribute(String attributeName) {
+        this.delegate.removeAttribute(attributeName);
+    }
+
+    @Override
+    public synchronized Instant getCreationTime() {
+        return this.delegate.getCreationTime();
+    }
+
+    @Override
+    public synchronized void setLastAccessedTime(Instant lastAccessedTime) {
+        this.delegate.setLastAccessedTime(lastAccessedTime);
+    }
+
+    @Override
+    public synchronized Instant getLastAccessedTime() {
+        return this.delegate.getLastAccessedTime();
+    }
+
+    @Override
+    public synchronized void setMaxInactiveInterval(Duration interval) {
+        this.delegate.setMaxInactiveInterval(interval);
+    }
+
+    @Override
+    public synchronized Duration getMaxInactiveInterval() {
+        return this.delegate.getMaxInactiveInterval();
+    }
+
+    @Override
+    public synchronized boolean isExpired() {
+        return this.delegate.isExpired();
+    }
+}
@@ -0,0 +1,49 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.io.Serializable;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Thông tin người dùng đăng nhập lưu trong session, thay cho entity User (kéo
+ * theo orders, cart, role khi serialize). Bất biến; có getter để JSP đọc bằng
+ * ${sessionScope.principal.fullName}.
+ */
+public final class SessionPrincipal implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String ATTRIBUTE = "principal";
+
+    private final long id;
+    private final String email;
+    private final String fullName;
+    private final String avatar;
+
+    public SessionPrincipal(long id, String email, String fullName, String avatar) {
+        this.id = id;
+        this.email = email;
+        this.fullName = fullName;
+        this.avatar = avatar;
+    }
+
+    // null nếu chưa đăng nhập
+    public static SessionPrincipal of(HttpSession session) {
+        return session == null ? null : (SessionPrincipal) session.getAttribute(ATTRIBUTE);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getAvatar() {
+        return avatar;
+    }
+}
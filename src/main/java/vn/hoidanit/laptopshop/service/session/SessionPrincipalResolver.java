@@ -0,0 +1,72 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpSession;
+import vn.hoidanit.laptopshop.domain.dto.LoginUserDTO;
+import vn.hoidanit.laptopshop.service.UserService;
+
+/**
+ * Lấy SessionPrincipal cho controller. Session tạo trước khi có "principal"
+ * (chỉ có id / email / fullName / avatar rời) được chuyển sang principal ngay
+ * lần đầu; không có cả hai thì dựng lại từ SecurityContext. Vẫn không được thì
+ * ném AuthenticationException để Spring Security đưa người dùng về /login.
+ */
+@Component
+public class SessionPrincipalResolver {
+    private static final String[] LEGACY_ATTRIBUTES = { "user", "id", "email", "fullName", "avatar" };
+
+    private final UserService userService;
+
+    public SessionPrincipalResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    public SessionPrincipal require(HttpSession session) {
+        SessionPrincipal principal = this.resolve(session);
+        if (principal == null) {
+            throw new InsufficientAuthenticationException("session has no principal");
+        }
+        return principal;
+    }
+
+    // null nếu không xác định được người dùng
+    public SessionPrincipal resolve(HttpSession session) {
+        if (session == null) {
+            return null;
+        }
+        SessionPrincipal principal = SessionPrincipal.of(session);
+        if (principal != null) {
+            return principal;
+        }
+
+        if (session.getAttribute("id") instanceof Long id && session.getAttribute("email") instanceof String email) {
+            principal = new SessionPrincipal(id, email, (String) session.getAttribute("fullName"),
+                    (String) session.getAttribute("avatar"));
+        } else {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null || !authentication.isAuthenticated()
+                    || authentication instanceof AnonymousAuthenticationToken) {
+                return null;
+            }
+            LoginUserDTO user = this.userService.getLoginUser(authentication.getName());
+            if (user == null) {
+                return null;
+            }
+            principal = new SessionPrincipal(user.getId(), user.getEmail(), user.getFullName(), user.getAvatar());
+            if (session.getAttribute("sum") == null) {
+                session.setAttribute("sum", user.getCartSum());
+            }
+        }
+
+        session.setAttribute(SessionPrincipal.ATTRIBUTE, principal);
+        for (String attribute : LEGACY_ATTRIBUTES) {
+            session.removeAttribute(attribute);
+        }
+        return principal;
+    }
+}
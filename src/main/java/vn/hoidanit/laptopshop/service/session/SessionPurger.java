@@ -0,0 +1,146 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Xóa session hết hạn theo từng lô nhỏ thay cho một câu DELETE lớn của
+ * spring-session-jdbc (đã tắt bằng spring.session.jdbc.cleanup-cron=-). Mỗi
+ * lô một transaction ngắn, nghỉ giữa các lô và dừng khi hết thời gian cho
+ * phép của lượt chạy; phần còn lại để lượt sau.
+ */
+@Component
+public class SessionPurger {
+    private static final Logger log = LoggerFactory.getLogger(SessionPurger.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String selectExpired;
+    private final String countExpired;
+    private final String deleteAttributes;
+    private final String deleteSessions;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long budgetNanos;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong purged = new AtomicLong();
+    private final AtomicLong backlog = new AtomicLong();
+    private final Timer chunkTimer;
+
+    public SessionPurger(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${spring.session.jdbc.table-name:SPRING_SESSION}") String tableName,
+            @Value("${session.purge.chunk-size:500}") int chunkSize,
+            @Value("${session.purge.pause:50ms}") Duration pause,
+            @Value("${session.purge.time-budget:5s}") Duration timeBudget,
+            @Value("${session.purge.interval:1m}") Duration interval,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // EXPIRY_TIME có index (SPRING_SESSION_IX2) nên các câu dưới chỉ quét khoảng đã hết hạn
+        this.selectExpired = "SELECT PRIMARY_ID FROM " + tableName + " WHERE EXPIRY_TIME < ? LIMIT ?";
+        this.countExpired = "SELECT COUNT(*) FROM " + tableName + " WHERE EXPIRY_TIME < ?";
+        // kiểm tra lại EXPIRY_TIME: session có thể vừa được truy cập lại giữa SELECT và DELETE
+        this.deleteAttributes = "DELETE FROM " + tableName + "_ATTRIBUTES WHERE SESSION_PRIMARY_ID IN "
+                + "(SELECT PRIMARY_ID FROM " + tableName + " WHERE PRIMARY_ID IN (%s) AND EXPIRY_TIME < ?)";
+        this.deleteSessions = "DELETE FROM " + tableName + " WHERE PRIMARY_ID IN (%s) AND EXPIRY_TIME < ?";
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pause.toMillis();
+        this.budgetNanos = timeBudget.toNanos();
+        this.intervalMillis = interval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-purge");
+            t.setDaemon(true);
+            return t;
+        });
+
+        FunctionCounter.builder("session.purge.deleted", this.purged, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("session.purge.backlog", this.backlog, AtomicLong::get).register(meterRegistry);
+        this.chunkTimer = Timer.builder("session.purge.chunk").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.scheduler.scheduleWithFixedDelay(this::runSafely, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            this.purge();
+        } catch (RuntimeException e) {
+            log.warn("session purge failed", e);
+        }
+    }
+
+    // một lượt: xóa từng lô cho tới khi hết session hết hạn hoặc hết thời gian cho phép
+    public void purge() {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        while (true) {
+            Chunk chunk = this.chunkTimer.record(() -> this.purgeChunk(now));
+            this.purged.addAndGet(chunk.deleted());
+            if (chunk.selected() < this.chunkSize || System.nanoTime() - started > this.budgetNanos) {
+                break;
+            }
+            try {
+                Thread.sleep(this.pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Long remaining = this.jdbcTemplate.queryForObject(this.countExpired, Long.class, now);
+        this.backlog.set(remaining == null ? 0 : remaining);
+    }
+
+    private Chunk purgeChunk(long now) {
+        List<String> ids = this.jdbcTemplate.queryForList(this.selectExpired, String.class, now, this.chunkSize);
+        if (ids.isEmpty()) {
+            return new Chunk(0, 0);
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = new Object[ids.size() + 1];
+        for (int i = 0; i < ids.size(); i++) {
+            args[i] = ids.get(i);
+        }
+        args[ids.size()] = now;
+
+        // xóa attributes trước để ON DELETE CASCADE không phải làm thêm trong câu xóa session
+        Integer deleted = this.transactionTemplate.execute(status -> {
+            this.jdbcTemplate.update(String.format(this.deleteAttributes, placeholders), args);
+            return this.jdbcTemplate.update(String.format(this.deleteSessions, placeholders), args);
+        });
+        return new Chunk(ids.size(), deleted == null ? 0 : deleted);
+    }
+
+    private record Chunk(int selected, int deleted) {
+    }
+}
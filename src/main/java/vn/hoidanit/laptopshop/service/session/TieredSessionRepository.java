@@ -0,0 +1,272 @@
+package vn.hoidanit.laptopshop.service.session;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * SessionRepository hai tầng: near cache trong JVM phía trước
+ * spring-session-jdbc.
+ * <ul>
+ * <li>Đọc: trả session trong cache; quá revalidate-after thì so
+ * LAST_ACCESS_TIME trong DB với bản đã biết, khác thì nạp lại (node khác đã
+ * ghi).</li>
+ * <li>Ghi: session mới / đổi id / xóa ghi ngay; còn lại chỉ đánh dấu dirty và
+ * được flush định kỳ theo lô. delegate.save tự mở transaction riêng
+ * (REQUIRES_NEW) cho từng session nên không bọc thêm transaction ngoài; ghi
+ * lỗi thì session được đánh dấu dirty lại cho lần sau.</li>
+ * </ul>
+ * JDBC vẫn là nguồn dữ liệu chính, node chết chỉ mất các thay đổi chưa flush
+ * (tối đa một chu kỳ flush).
+ */
+public class TieredSessionRepository implements FindByIndexNameSessionRepository<NearSession>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(TieredSessionRepository.class);
+
+    private final FindByIndexNameSessionRepository<Session> delegate;
+    private final JdbcOperations jdbcOperations;
+    private final String versionQuery;
+    private final long revalidateAfterNanos;
+    private final long idleEvictionNanos;
+    private final int batchSize;
+    private final Map<String, NearSession> cache = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final Timer flushTimer;
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public TieredSessionRepository(FindByIndexNameSessionRepository<? extends Session> delegate,
+            JdbcOperations jdbcOperations, String tableName,
+            Duration revalidateAfter, Duration flushInterval, Duration idleEviction, int batchSize,
+            MeterRegistry meterRegistry) {
+        this.delegate = (FindByIndexNameSessionRepository<Session>) delegate;
+        this.jdbcOperations = jdbcOperations;
+        // version kèm cờ hết hạn: cờ do node khác đặt vẫn được thấy dù LAST_ACCESS_TIME đã bị ghi đè
+        this.versionQuery = "SELECT s.LAST_ACCESS_TIME, EXISTS (SELECT 1 FROM " + tableName + "_ATTRIBUTES a "
+                + "WHERE a.SESSION_PRIMARY_ID = s.PRIMARY_ID AND a.ATTRIBUTE_NAME = ?) FROM " + tableName
+                + " s WHERE s.SESSION_ID = ?";
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
+        this.idleEvictionNanos = idleEviction.toNanos();
+        this.batchSize = batchSize;
+
+        FunctionCounter.builder("session.near.cache.requests", this.hits, AtomicLong::get)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("session.near.cache.requests", this.revalidations, AtomicLong::get)
+                .tag("result", "revalidated").register(meterRegistry);
+        FunctionCounter.builder("session.near.cache.requests", this.misses, AtomicLong::get)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("session.write.behind.flushed", this.flushed, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("session.near.cache.size", this.cache, Map::size).register(meterRegistry);
+        Gauge.builder("session.write.behind.pending", this.dirty, Set::size).register(meterRegistry);
+        this.flushTimer = Timer.builder("session.write.behind.flush").register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushAndEvict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public NearSession createSession() {
+        return new NearSession(this.delegate.createSession(), false);
+    }
+
+    @Override
+    public void save(NearSession session) {
+        synchronized (session) {
+            if (session.needsSyncSave()) {
+                // session mới hoặc vừa đổi id (đăng nhập): ghi ngay để node khác thấy
+                String oldId = session.getCachedId();
+                this.delegate.save(session.getDelegate());
+                session.markPersisted();
+                this.cache.remove(oldId);
+                this.dirty.remove(oldId);
+                this.lastUsed.remove(oldId);
+                this.put(session);
+                return;
+            }
+        }
+        this.put(session);
+        this.dirty.add(session.getId());
+    }
+
+    @Override
+    public NearSession findById(String id) {
+        NearSession cached = this.cache.get(id);
+        if (cached != null) {
+            if (cached.isExpired()) {
+                this.deleteById(id);
+                return null;
+            }
+            if (System.nanoTime() - cached.getCheckedAt() < this.revalidateAfterNanos) {
+                this.hits.incrementAndGet();
+                this.lastUsed.put(id, System.nanoTime());
+                return cached;
+            }
+            if (!this.dirty.contains(id) && this.isCurrent(cached)) {
+                this.revalidations.incrementAndGet();
+                cached.markChecked();
+                this.lastUsed.put(id, System.nanoTime());
+                return cached;
+            }
+            // có thay đổi local chưa ghi: ghi trước rồi nạp lại để thấy cả thay đổi của node khác
+            this.flushOne(id);
+        }
+
+        this.misses.incrementAndGet();
+        Session loaded = this.delegate.findById(id);
+        if (loaded == null) {
+            this.evict(id);
+            return null;
+        }
+        NearSession session = new NearSession(loaded, true);
+        this.put(session);
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        this.evict(id);
+        this.delegate.deleteById(id);
+    }
+
+    @Override
+    public Map<String, NearSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, ? extends Session> found = this.delegate.findByIndexNameAndIndexValue(indexName, indexValue);
+        Map<String, NearSession> result = new HashMap<>();
+        for (Map.Entry<String, ? extends Session> entry : found.entrySet()) {
+            NearSession cached = this.cache.get(entry.getKey());
+            result.put(entry.getKey(), cached != null ? cached : new NearSession(entry.getValue(), true));
+        }
+        return result;
+    }
+
+    // ghi ngay thay đổi đang chờ của một session (vd. đánh dấu hết hạn) để node khác thấy sớm
+    public void flushNow(String id) {
+        this.flushOne(id);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.flusher.shutdown();
+        this.flushDirty(Integer.MAX_VALUE);
+        if (this.delegate instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    private void put(NearSession session) {
+        String id = session.getId();
+        this.cache.put(id, session);
+        this.lastUsed.put(id, System.nanoTime());
+    }
+
+    private void evict(String id) {
+        this.cache.remove(id);
+        this.dirty.remove(id);
+        this.lastUsed.remove(id);
+    }
+
+    // so version (LAST_ACCESS_TIME) trong DB với bản node này đã ghi / đọc lần cuối; DB có cờ hết hạn
+    // mà bản trong cache chưa có thì cũng nạp lại
+    private boolean isCurrent(NearSession session) {
+        List<Boolean> current = this.jdbcOperations.query(this.versionQuery,
+                (rs, rowNum) -> rs.getLong(1) == session.getPersistedVersion()
+                        && (!rs.getBoolean(2) || session.getAttribute(ClusterSessionRegistry.EXPIRED_ATTRIBUTE) != null),
+                ClusterSessionRegistry.EXPIRED_ATTRIBUTE, session.getId());
+        return !current.isEmpty() && current.get(0);
+    }
+
+    private void flushOne(String id) {
+        NearSession session = this.cache.get(id);
+        if (session == null || !this.dirty.remove(id)) {
+            return;
+        }
+        try {
+            synchronized (session) {
+                this.delegate.save(session.getDelegate());
+                session.markPersisted();
+            }
+        } catch (RuntimeException e) {
+            // chưa ghi được: giữ lại để lần flush sau thử lại
+            this.dirty.add(id);
+            throw e;
+        }
+        this.flushed.incrementAndGet();
+    }
+
+    private void flushAndEvict() {
+        try {
+            while (this.flushDirty(this.batchSize) == this.batchSize) {
+                // cả lô ghi được và còn nữa thì flush lô tiếp
+            }
+            this.evictIdle();
+        } catch (RuntimeException e) {
+            log.warn("session write-behind flush failed", e);
+        }
+    }
+
+    // ghi tối đa max session dirty, trả về số session ghi thành công
+    private int flushDirty(int max) {
+        List<String> batch = new ArrayList<>();
+        Iterator<String> it = this.dirty.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[] written = new int[1];
+        this.flushTimer.record(() -> {
+            for (String id : batch) {
+                try {
+                    this.flushOne(id);
+                    written[0]++;
+                } catch (RuntimeException e) {
+                    log.warn("session write-behind flush failed for one session, will retry", e);
+                }
+            }
+        });
+        return written[0];
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> entry : this.lastUsed.entrySet()) {
+            String id = entry.getKey();
+            if (now - entry.getValue() > this.idleEvictionNanos && !this.dirty.contains(id)) {
+                this.cache.remove(id);
+                this.lastUsed.remove(id);
+            }
+        }
+    }
+}
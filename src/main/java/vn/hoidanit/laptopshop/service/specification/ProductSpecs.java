@@ -49,4 +49,24 @@ public class ProductSpecs {
                 root.get(Product_.PRICE), min, max);
     }
 
+    // keyset: các sản phẩm đứng sau id (sắp theo id tăng dần)
+    public static Specification<Product> afterId(long id) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.gt(root.get(Product_.ID), id);
+    }
+
+    // keyset: các sản phẩm đứng sau (price, id) theo chiều sắp xếp
+    public static Specification<Product> afterPriceAndId(double price, long id, boolean ascending) {
+        return (root, query, criteriaBuilder) -> ascending
+                ? criteriaBuilder.or(
+                        criteriaBuilder.gt(root.get(Product_.PRICE), price),
+                        criteriaBuilder.and(
+                                criteriaBuilder.equal(root.get(Product_.PRICE), price),
+                                criteriaBuilder.gt(root.get(Product_.ID), id)))
+                : criteriaBuilder.or(
+                        criteriaBuilder.lt(root.get(Product_.PRICE), price),
+                        criteriaBuilder.and(
+                                criteriaBuilder.equal(root.get(Product_.PRICE), price),
+                                criteriaBuilder.lt(root.get(Product_.ID), id)));
+    }
+
 }
@@ -0,0 +1,413 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import vn.hoidanit.laptopshop.domain.Product;
+
+/**
+ * Chế độ flash sale cho các sản phẩm trong flash-sale.products: tồn kho bán ra
+ * từ bộ đếm trong bộ nhớ (AtomicLong, trừ bằng CAS), hết hàng thì từ chối ngay
+ * mà không chạm MySQL.
+ * <p>
+ * Mỗi node nhận tồn kho theo từng khối (flash-sale.claim-size) bằng UPDATE có
+ * điều kiện quantity >= ? trên products, ghi lại vào flash_sale_allotments của
+ * node, nên tổng các node không bao giờ vượt tồn kho; hàng nhập thêm được nhận
+ * ở lần lấy khối sau. Dòng order_detail flash sale được ghi stock_pending = 1 và
+ * stock_node = node này; luồng nền của node tăng sold và trừ phần đã nhận tương
+ * ứng theo lô.
+ * <p>
+ * Khởi động lại (flash-sale.node-id phải cố định): bộ đếm = phần đã nhận của
+ * node - tổng order_detail còn stock_pending của node. Dừng bình thường thì trả
+ * phần chưa bán về products.quantity.
+ */
+@Component
+public class FlashSaleStock {
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleStock.class);
+
+    private static final String LOAD_ALLOTMENT = "SELECT COALESCE((SELECT a.claimed FROM flash_sale_allotments a "
+            + "WHERE a.node_id = ? AND a.product_id = p.id), 0) - COALESCE((SELECT SUM(od.quantity) "
+            + "FROM order_detail od WHERE od.product_id = p.id AND od.stock_pending = 1 AND od.stock_node = ?), 0) "
+            + "FROM products p WHERE p.id = ?";
+    private static final String TAKE = "UPDATE products SET quantity = quantity - ? WHERE id = ? AND quantity >= ?";
+    private static final String AVAILABLE = "SELECT quantity FROM products WHERE id = ?";
+    private static final String ADD_ALLOTMENT = "INSERT INTO flash_sale_allotments (node_id, product_id, claimed) "
+            + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE claimed = claimed + VALUES(claimed)";
+    private static final String GIVE_BACK = "UPDATE products SET quantity = quantity + ? WHERE id = ?";
+    private static final String SUB_ALLOTMENT = "UPDATE flash_sale_allotments SET claimed = claimed - ? "
+            + "WHERE node_id = ? AND product_id = ?";
+    private static final String SELECT_PENDING = "SELECT id, product_id, quantity FROM order_detail "
+            + "WHERE stock_pending = 1 AND stock_node = ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String APPLY_SOLD = "UPDATE products SET sold = sold + ? WHERE id = ?";
+    private static final String MARK_APPLIED = "UPDATE order_detail SET stock_pending = 0 WHERE id = ?";
+    // dòng ghi trước khi có stock_node: tồn kho chưa từng bị trừ khỏi products
+    private static final String SELECT_LEGACY = "SELECT id, product_id, quantity FROM order_detail "
+            + "WHERE stock_pending = 1 AND stock_node IS NULL FOR UPDATE";
+    private static final String APPLY_LEGACY = "UPDATE products SET quantity = quantity - ?, sold = sold + ? "
+            + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+    private final Map<Long, ProductStock> stock = new HashMap<>();
+    private final long claimSize;
+    private final long emptyRecheckNanos;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Counter reserved;
+    private final Counter soldOut;
+    private final Counter claimed;
+    private final Counter applied;
+    private final Timer flushTimer;
+
+    public FlashSaleStock(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            EntityManagerFactory entityManagerFactory, ApplicationEventPublisher eventPublisher,
+            @Value("${flash-sale.products:}") List<Long> productIds,
+            @Value("${flash-sale.node-id:${HOSTNAME:local}}") String nodeId,
+            @Value("${flash-sale.claim-size:50}") long claimSize,
+            @Value("${flash-sale.empty-recheck:2s}") Duration emptyRecheck,
+            @Value("${flash-sale.flush.interval:200ms}") Duration flushInterval,
+            @Value("${flash-sale.flush.batch-size:500}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        // nhận / trả tồn kho commit riêng, không phụ thuộc đơn hàng đang chạy
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+        this.nodeId = nodeId;
+        this.claimSize = claimSize;
+        this.emptyRecheckNanos = emptyRecheck.toNanos();
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "flash-sale-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        this.reserved = Counter.builder("flash.stock.reserve").tag("outcome", "reserved").register(meterRegistry);
+        this.soldOut = Counter.builder("flash.stock.reserve").tag("outcome", "sold_out").register(meterRegistry);
+        this.claimed = Counter.builder("flash.stock.claimed").register(meterRegistry);
+        this.applied = Counter.builder("flash.stock.applied").register(meterRegistry);
+        this.flushTimer = Timer.builder("flash.stock.flush").register(meterRegistry);
+
+        if (!productIds.isEmpty()) {
+            this.applyLegacy();
+        }
+        // đối soát phần đã nhận của node ngay khi tạo bean (sau khi schema đã cập nhật), trước khi nhận request
+        for (Long id : productIds) {
+            List<Long> allotment = this.jdbcTemplate.queryForList(LOAD_ALLOTMENT, Long.class, nodeId, nodeId, id);
+            if (allotment.isEmpty()) {
+                log.warn("flash sale product {} not found, ignored", id);
+                continue;
+            }
+            ProductStock product = new ProductStock(Math.max(0, allotment.get(0)));
+            this.stock.put(id, product);
+            Gauge.builder("flash.stock.remaining", product.local, AtomicLong::get).tag("product", String.valueOf(id))
+                    .register(meterRegistry);
+        }
+        if (!this.stock.isEmpty()) {
+            log.info("flash sale enabled for products {} on node {}", this.stock.keySet(), nodeId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (this.stock.isEmpty()) {
+            return;
+        }
+        this.scheduler.scheduleWithFixedDelay(this::tick, 0, this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.scheduler.shutdown();
+        this.scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        if (this.stock.isEmpty()) {
+            return;
+        }
+        this.flushSafely();
+        // trả phần chưa bán để node khác nhận được
+        for (Map.Entry<Long, ProductStock> entry : this.stock.entrySet()) {
+            long unsold = entry.getValue().local.getAndSet(0);
+            if (unsold <= 0) {
+                continue;
+            }
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> {
+                    this.jdbcTemplate.update(GIVE_BACK, unsold, entry.getKey());
+                    this.jdbcTemplate.update(SUB_ALLOTMENT, unsold, this.nodeId, entry.getKey());
+                });
+                this.evict(entry.getKey());
+            } catch (RuntimeException e) {
+                // vẫn còn trong flash_sale_allotments, lần khởi động sau nhận lại
+                log.warn("cannot return flash sale stock for product {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    public boolean isFlashSale(long productId) {
+        return this.stock.containsKey(productId);
+    }
+
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    // hết hàng: node không còn phần nào và products.quantity vừa được thấy bằng 0
+    public boolean isSoldOut(long productId) {
+        ProductStock product = this.stock.get(productId);
+        return product != null && product.local.get() <= 0 && this.knownEmpty(product);
+    }
+
+    /**
+     * Trừ tồn kho trong bộ nhớ cho các dòng flash sale, tất cả hoặc không gì cả.
+     * Phải gọi trong transaction đơn hàng: nếu transaction rollback thì số lượng
+     * được trả lại. Sản phẩm không thuộc flash sale được bỏ qua. Phần của node
+     * không đủ thì ném StockClaimRequiredException thay vì nhận khối ngay, để
+     * transaction đơn hàng không mở thêm connection: người gọi gọi claimFor sau
+     * khi rollback rồi chạy lại.
+     */
+    public void reserve(Map<Long, Long> quantities) {
+        SortedMap<Long, Long> taken = new TreeMap<>();
+        for (Map.Entry<Long, Long> entry : quantities.entrySet()) {
+            ProductStock product = this.stock.get(entry.getKey());
+            long quantity = entry.getValue();
+            if (product == null || quantity <= 0) {
+                continue;
+            }
+            boolean ok = tryDecrement(product.local, quantity);
+            if (!ok && !this.knownEmpty(product)) {
+                this.release(taken);
+                throw new StockClaimRequiredException(entry.getKey(), quantity);
+            }
+            if (!ok) {
+                this.soldOut.increment();
+                this.release(taken);
+                throw new InsufficientStockException(entry.getKey());
+            }
+            taken.put(entry.getKey(), quantity);
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        this.reserved.increment();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(taken);
+                }
+            }
+        });
+    }
+
+    // nhận thêm một khối cho needed sản phẩm, gọi ngoài transaction đơn hàng
+    public void claimFor(long productId, long needed) {
+        ProductStock product = this.stock.get(productId);
+        if (product != null) {
+            this.claim(productId, product, needed);
+        }
+    }
+
+    private static boolean tryDecrement(AtomicLong counter, long quantity) {
+        while (true) {
+            long current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(Map<Long, Long> taken) {
+        for (Map.Entry<Long, Long> entry : taken.entrySet()) {
+            this.stock.get(entry.getKey()).local.addAndGet(entry.getValue());
+        }
+    }
+
+    private boolean knownEmpty(ProductStock product) {
+        long at = product.emptyAt;
+        return at != 0 && System.nanoTime() - at < this.emptyRecheckNanos;
+    }
+
+    /**
+     * Lấy max(claim-size, needed) khỏi products.quantity bằng UPDATE có điều kiện;
+     * không đủ thì lấy phần còn lại. Ghi vào flash_sale_allotments cùng transaction.
+     * needed = 0: nạp trước, chỉ nhận khi phần của node dưới nửa khối.
+     */
+    private void claim(long productId, ProductStock product, long needed) {
+        long threshold = needed > 0 ? needed : Math.max(this.claimSize / 2, 1);
+        product.claimLock.lock();
+        try {
+            if (product.local.get() >= threshold || this.knownEmpty(product)) {
+                // luồng khác vừa nhận xong
+                return;
+            }
+            long want = Math.max(this.claimSize, needed);
+            Long got = this.transactionTemplate.execute(status -> {
+                long amount = want;
+                if (this.jdbcTemplate.update(TAKE, amount, productId, amount) == 0) {
+                    List<Long> available = this.jdbcTemplate.queryForList(AVAILABLE + " FOR UPDATE", Long.class,
+                            productId);
+                    amount = available.isEmpty() ? 0 : available.get(0);
+                    if (amount <= 0 || this.jdbcTemplate.update(TAKE, amount, productId, amount) == 0) {
+                        return 0L;
+                    }
+                }
+                this.jdbcTemplate.update(ADD_ALLOTMENT, this.nodeId, productId, amount);
+                return amount;
+            });
+            long amount = got == null ? 0 : got;
+            if (amount > 0) {
+                product.local.addAndGet(amount);
+                product.emptyAt = 0;
+                this.claimed.increment(amount);
+                this.evict(productId);
+            }
+            if (amount < want) {
+                product.emptyAt = System.nanoTime();
+            }
+        } catch (RuntimeException e) {
+            log.warn("flash sale claim failed for product {}", productId, e);
+        } finally {
+            product.claimLock.unlock();
+        }
+    }
+
+    private void tick() {
+        // nạp trước khối mới khi phần của node xuống dưới nửa khối
+        for (Map.Entry<Long, ProductStock> entry : this.stock.entrySet()) {
+            ProductStock product = entry.getValue();
+            if (product.local.get() < this.claimSize / 2 && !this.knownEmpty(product)) {
+                this.claim(entry.getKey(), product, 0);
+            }
+        }
+        this.flushSafely();
+    }
+
+    private void flushSafely() {
+        try {
+            Supplier<Integer> batch = this::flushBatch;
+            while (this.flushTimer.record(batch) >= this.batchSize) {
+                // còn dòng chờ: flush tiếp lô sau
+            }
+        } catch (RuntimeException e) {
+            log.warn("flash sale stock flush failed, will retry", e);
+        }
+    }
+
+    // một lô: khóa các dòng stock_pending của node, tăng sold, trừ phần đã nhận rồi đánh dấu đã áp dụng
+    private int flushBatch() {
+        List<Long> productIds = new ArrayList<>();
+        Integer rows = this.transactionTemplate.execute(status -> {
+            List<long[]> pending = this.jdbcTemplate.query(SELECT_PENDING,
+                    (rs, i) -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) }, this.nodeId,
+                    this.batchSize);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            SortedMap<Long, Long> totals = new TreeMap<>();
+            List<Object[]> marks = new ArrayList<>(pending.size());
+            for (long[] row : pending) {
+                totals.merge(row[1], row[2], Long::sum);
+                marks.add(new Object[] { row[0] });
+            }
+            List<Object[]> sold = new ArrayList<>(totals.size());
+            List<Object[]> allotments = new ArrayList<>(totals.size());
+            for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+                sold.add(new Object[] { entry.getValue(), entry.getKey() });
+                allotments.add(new Object[] { entry.getValue(), this.nodeId, entry.getKey() });
+            }
+            this.jdbcTemplate.batchUpdate(APPLY_SOLD, sold);
+            this.jdbcTemplate.batchUpdate(SUB_ALLOTMENT, allotments);
+            this.jdbcTemplate.batchUpdate(MARK_APPLIED, marks);
+            this.eventPublisher.publishEvent(new ProductsSoldEvent(totals));
+            productIds.addAll(totals.keySet());
+            return pending.size();
+        });
+        for (Long id : productIds) {
+            this.evict(id);
+        }
+        int count = rows == null ? 0 : rows;
+        this.applied.increment(count);
+        return count;
+    }
+
+    private void applyLegacy() {
+        List<Long> productIds = new ArrayList<>();
+        this.transactionTemplate.executeWithoutResult(status -> {
+            List<long[]> pending = this.jdbcTemplate.query(SELECT_LEGACY,
+                    (rs, i) -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) });
+            SortedMap<Long, Long> totals = new TreeMap<>();
+            List<Object[]> marks = new ArrayList<>(pending.size());
+            for (long[] row : pending) {
+                totals.merge(row[1], row[2], Long::sum);
+                marks.add(new Object[] { row[0] });
+            }
+            List<Object[]> updates = new ArrayList<>(totals.size());
+            for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+                updates.add(new Object[] { entry.getValue(), entry.getValue(), entry.getKey() });
+            }
+            this.jdbcTemplate.batchUpdate(APPLY_LEGACY, updates);
+            this.jdbcTemplate.batchUpdate(MARK_APPLIED, marks);
+            this.eventPublisher.publishEvent(new ProductsSoldEvent(totals));
+            productIds.addAll(totals.keySet());
+        });
+        for (Long id : productIds) {
+            this.evict(id);
+        }
+    }
+
+    private void evict(long productId) {
+        this.entityManagerFactory.getCache().evict(Product.class, productId);
+    }
+
+    private static final class ProductStock {
+        // phần node đã nhận và chưa bán
+        private final AtomicLong local;
+        private final ReentrantLock claimLock = new ReentrantLock();
+        // nanoTime lần cuối thấy products.quantity không đủ, 0 = chưa
+        private volatile long emptyAt;
+
+        ProductStock(long initial) {
+            this.local = new AtomicLong(initial);
+        }
+    }
+}
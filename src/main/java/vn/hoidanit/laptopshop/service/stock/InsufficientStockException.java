@@ -0,0 +1,19 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// một dòng trong giỏ không đủ tồn kho: toàn bộ đơn hàng bị rollback
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends RuntimeException {
+    private final long productId;
+
+    public InsufficientStockException(long productId) {
+        super("insufficient stock for product " + productId);
+        this.productId = productId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,7 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+import java.util.Map;
+
+// phát trong transaction vừa tăng products.sold: productId -> số lượng bán thêm
+public record ProductsSoldEvent(Map<Long, Long> quantities) {
+}
@@ -0,0 +1,22 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+// phần flash sale của node không đủ cho một dòng: transaction đơn hàng rollback, nhận thêm khối
+// (FlashSaleStock.claimFor) ngoài transaction rồi chạy lại
+public class StockClaimRequiredException extends RuntimeException {
+    private final long productId;
+    private final long quantity;
+
+    public StockClaimRequiredException(long productId, long quantity) {
+        super("flash sale stock claim required for product " + productId);
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+}
@@ -0,0 +1,100 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import vn.hoidanit.laptopshop.domain.Product;
+
+/**
+ * Giữ tồn kho cho cả giỏ hàng trong transaction của đơn hàng: mỗi dòng là một
+ * UPDATE có điều kiện quantity >= ?, đồng thời tăng sold. Các dòng luôn được
+ * cập nhật theo thứ tự product id tăng dần nên hai đơn hàng chung sản phẩm
+ * không thể khóa chéo nhau. Chỉ cần một dòng thiếu hàng là ném
+ * InsufficientStockException và transaction gọi tới rollback toàn bộ.
+ * <p>
+ * Sản phẩm đang flash sale được giữ trong bộ nhớ bởi FlashSaleStock (trước, để
+ * hết hàng thì từ chối mà không chạm MySQL) và không có trong câu UPDATE.
+ */
+@Service
+public class StockReservationService {
+    private static final String RESERVE = "UPDATE products SET quantity = quantity - ?, sold = sold + ? "
+            + "WHERE id = ? AND quantity >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final FlashSaleStock flashSaleStock;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer reserved;
+    private final Timer rejected;
+    private final Counter lines;
+
+    public StockReservationService(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+            FlashSaleStock flashSaleStock, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.flashSaleStock = flashSaleStock;
+        this.eventPublisher = eventPublisher;
+        // thời gian giữ hàng gồm cả thời gian chờ row lock: đo độ tranh chấp trên sản phẩm "nóng"
+        this.reserved = Timer.builder("stock.reserve").tag("outcome", "reserved").register(meterRegistry);
+        this.rejected = Timer.builder("stock.reserve").tag("outcome", "rejected").register(meterRegistry);
+        this.lines = Counter.builder("stock.reserve.lines").register(meterRegistry);
+    }
+
+    // quantities: productId -> số lượng cần giữ
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Long> quantities) {
+        this.flashSaleStock.reserve(quantities);
+
+        SortedMap<Long, Long> ordered = new TreeMap<>(quantities);
+        ordered.values().removeIf(quantity -> quantity <= 0);
+        ordered.keySet().removeIf(this.flashSaleStock::isFlashSale);
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(ordered.keySet());
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        for (Map.Entry<Long, Long> entry : ordered.entrySet()) {
+            long quantity = entry.getValue();
+            args.add(new Object[] { quantity, quantity, entry.getKey(), quantity });
+        }
+
+        long start = System.nanoTime();
+        int[] counts = this.jdbcTemplate.batchUpdate(RESERVE, args);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                this.rejected.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw new InsufficientStockException(ids.get(i));
+            }
+        }
+        this.reserved.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        this.lines.increment(counts.length);
+        this.eventPublisher.publishEvent(new ProductsSoldEvent(ordered));
+
+        // UPDATE chạy ngoài Hibernate: xóa các Product liên quan khỏi second-level cache sau khi commit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (Long id : ids) {
+                    entityManagerFactory.getCache().evict(Product.class, id);
+                }
+            }
+        });
+    }
+}
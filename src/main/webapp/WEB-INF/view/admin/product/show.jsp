@@ -75,28 +75,48 @@
                                                         </tbody>
                                                     </table>
                                                     <nav aria-label="Page navigation example">
-                                                        <ul class="pagination justify-content-center">
-                                                            <li class="page-item">
-                                                                <a class="${1 eq currentPage ? 'disabled page-link' : 'page-link'}"
-                                                                    href="/admin/product?page=${currentPage - 1}"
-                                                                    aria-label="Previous">
-                                                                    <span aria-hidden="true">&laquo;</span>
-                                                                </a>
-                                                            </li>
-                                                            <c:forEach begin="0" end="${totalPages - 1}"
-                                                                varStatus="loop">
-                                                                <a class="${(loop.index + 1) eq currentPage ? 'active page-link' : 'page-link'}"
-                                                                    href="/admin/product?page=${loop.index + 1}">${loop.index
-                                                                    + 1}</a>
-                                                            </c:forEach>
-                                                            <li class="page-item">
-                                                                <a class="${totalPages eq currentPage ? 'disabled page-link' : 'page-link'}"
-                                                                    href="/admin/product?page=${currentPage + 1}"
-                                                                    aria-label="Next">
-                                                                    <span aria-hidden="true">&raquo;</span>
-                                                                </a>
-                                                            </li>
-                                                        </ul>
+                                                        <c:choose>
+                                                            <c:when test="${cursorMode}">
+                                                                <ul class="pagination justify-content-center">
+                                                                    <li class="page-item">
+                                                                        <a class="page-link"
+                                                                            href="/admin/product?cursor=first">Trang
+                                                                            đầu</a>
+                                                                    </li>
+                                                                    <li class="page-item">
+                                                                        <a class="${empty nextCursor ? 'disabled page-link' : 'page-link'}"
+                                                                            href="/admin/product?cursor=${nextCursor}"
+                                                                            aria-label="Next">
+                                                                            <span aria-hidden="true">&raquo;</span>
+                                                                        </a>
+                                                                    </li>
+                                                                </ul>
+                                                            </c:when>
+                                                            <c:otherwise>
+                                                                <ul class="pagination justify-content-center">
+                                                                    <li class="page-item">
+                                                                        <a class="${1 eq currentPage ? 'disabled page-link' : 'page-link'}"
+                                                                            href="/admin/product?page=${currentPage - 1}"
+                                                                            aria-label="Previous">
+                                                                            <span aria-hidden="true">&laquo;</span>
+                                                                        </a>
+                                                                    </li>
+                                                                    <c:forEach begin="0" end="${totalPages - 1}"
+                                                                        varStatus="loop">
+                                                                        <a class="${(loop.index + 1) eq currentPage ? 'active page-link' : 'page-link'}"
+                                                                            href="/admin/product?page=${loop.index + 1}">${loop.index
+                                                                            + 1}</a>
+                                                                    </c:forEach>
+                                                                    <li class="page-item">
+                                                                        <a class="${totalPages eq currentPage ? 'disabled page-link' : 'page-link'}"
+                                                                            href="/admin/product?page=${currentPage + 1}"
+                                                                            aria-label="Next">
+                                                                            <span aria-hidden="true">&raquo;</span>
+                                                                        </a>
+                                                                    </li>
+                                                                </ul>
+                                                            </c:otherwise>
+                                                        </c:choose>
                                                     </nav>
                                                 </div>
                                             </div>
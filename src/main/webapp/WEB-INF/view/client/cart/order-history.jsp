@@ -72,7 +72,24 @@
                                     </tr>
                                 </thead>
                                 <tbody>
-                                    <c:if test="${ empty orders}">
+                                    <c:forEach var="intake" items="${intakes}">
+                                        <tr>
+                                            <td colspan="2">Yêu cầu đặt hàng #${intake.id}</td>
+                                            <td colspan="1">
+                                                <fmt:formatNumber type="number" value="${intake.totalPrice}" />
+                                                đ
+                                            </td>
+                                            <td colspan="2"></td>
+                                            <td colspan="1">
+                                                <c:choose>
+                                                    <c:when test="${intake.status == 'PENDING'}">Đang xử lý</c:when>
+                                                    <c:when test="${intake.status == 'REJECTED'}">Hết hàng, sản phẩm đã trả về giỏ</c:when>
+                                                    <c:otherwise>Lỗi, sản phẩm đã trả về giỏ, vui lòng đặt lại</c:otherwise>
+                                                </c:choose>
+                                            </td>
+                                        </tr>
+                                    </c:forEach>
+                                    <c:if test="${ empty orders and empty intakes}">
                                         <tr>
                                             <td colspan="6">
                                                 Không có đơn hàng nào được tạo
@@ -59,6 +59,11 @@
                                     </ol>
                                 </nav>
                             </div>
+                            <c:if test="${param.outOfStock != null}">
+                                <div class="alert alert-danger" role="alert">
+                                    Sản phẩm trong giỏ hàng không đủ số lượng tồn kho, vui lòng cập nhật lại giỏ hàng.
+                                </div>
+                            </c:if>
                             <div class="table-responsive">
                                 <table class="table">
                                     <thead>
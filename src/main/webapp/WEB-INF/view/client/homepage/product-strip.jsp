@@ -0,0 +1,46 @@
+<%@page contentType="text/html" pageEncoding="UTF-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
+<%-- Fragment dùng chung cho mọi người dùng, không được chứa dữ liệu theo session.
+     CSRF token được chèn vào chỗ __CSRF_TOKEN__ mỗi lần trả về. --%>
+<c:forEach var="product" items="${products}">
+    <div class="col-md-6 col-lg-4 col-xl-3">
+        <div class="rounded position-relative fruite-item">
+            <div class="fruite-img">
+                <img src="/images/product/${product.image}"
+                    class="img-fluid w-100 rounded-top" alt="">
+            </div>
+            <div class="text-white bg-secondary px-3 py-1 rounded position-absolute"
+                style="top: 10px; left: 10px;">Laptop</div>
+            <div
+                class="p-4 border border-secondary border-top-0 rounded-bottom">
+                <h4 style="font-size: 15px;">
+                    <a href="/product/${product.id}">${product.name}</a>
+                </h4>
+                <p style="font-size: 13px;">${product.shortDesc}</p>
+                <div
+                    class="d-flex flex-lg-wrap justify-content-center flex-column">
+                    <p style="font-size: 15px; text-align: center; width: 100%;"
+                        class="text-dark fw-bold mb-3">
+                        <fmt:formatNumber type="number"
+                            value="${product.price}" /> đ
+                    </p>
+                    <form action="/add-product-to-cart/${product.id}"
+                        method="post">
+                        <input type="hidden"
+                            name="${_csrf.parameterName}"
+                            value="__CSRF_TOKEN__" />
+                        <input type="hidden"
+                            name="idempotencyKey"
+                            value="__IDEMPOTENCY_KEY__" />
+                        <button
+                            class="mx-auto btn border border-secondary rounded-pill px-3 text-primary">
+                            <i
+                                class="fa fa-shopping-bag me-2 text-primary"></i>
+                            Add to cart</button>
+                    </form>
+                </div>
+            </div>
+        </div>
+    </div>
+</c:forEach>
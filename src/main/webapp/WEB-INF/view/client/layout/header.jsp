@@ -18,6 +18,12 @@
 
                         </div>
                         <div class="d-flex m-3 me-0">
+                            <form action="/products" method="get" class="d-flex my-auto me-4">
+                                <input class="form-control" type="search" name="q" placeholder="Tìm kiếm sản phẩm"
+                                    id="searchInput" list="searchSuggestions" autocomplete="off"
+                                    value="<c:out value='${param.q}' />">
+                                <datalist id="searchSuggestions"></datalist>
+                            </form>
                             <c:if test="${not empty pageContext.request.userPrincipal}">
                                 <a href="/cart" class="position-relative me-4 my-auto">
                                     <i class="fa fa-shopping-bag fa-2x"></i>
@@ -36,9 +42,9 @@
                                     <ul class="dropdown-menu dropdown-menu-end p-4" arialabelledby="dropdownMenuLink">
                                         <li class="d-flex align-items-center flex-column" style="min-width: 300px;">
                                             <img style="width: 150px; height: 150px; border-radius: 50%; overflow: hidden;"
-                                                src="/images/avatar/${sessionScope.avatar}" />
+                                                src="/images/avatar/${sessionScope.principal.avatar}" />
                                             <div class="text-center my-3">
-                                                <c:out value="${sessionScope.fullName}" />
+                                                <c:out value="${sessionScope.principal.fullName}" />
                                             </div>
                                         </li>
                                         <li><a class="dropdown-item" href="#">Quản lý tài khoản</a></li>
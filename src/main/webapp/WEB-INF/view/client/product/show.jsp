@@ -70,34 +70,34 @@
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-1"
                                                         value="APPLE">
-                                                    <label class="form-check-label" for="factory-1">Apple</label>
+                                                    <label class="form-check-label" for="factory-1">Apple<c:if test="${not empty facets.factory['APPLE']}"> (${facets.factory['APPLE']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-2"
                                                         value="ASUS">
-                                                    <label class="form-check-label" for="factory-2">Asus</label>
+                                                    <label class="form-check-label" for="factory-2">Asus<c:if test="${not empty facets.factory['ASUS']}"> (${facets.factory['ASUS']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-3"
                                                         value="LENOVO">
-                                                    <label class="form-check-label" for="factory-3">Lenovo</label>
+                                                    <label class="form-check-label" for="factory-3">Lenovo<c:if test="${not empty facets.factory['LENOVO']}"> (${facets.factory['LENOVO']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-4"
                                                         value="DELL">
-                                                    <label class="form-check-label" for="factory-4">Dell</label>
+                                                    <label class="form-check-label" for="factory-4">Dell<c:if test="${not empty facets.factory['DELL']}"> (${facets.factory['DELL']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-5"
                                                         value="LG">
-                                                    <label class="form-check-label" for="factory-5">LG</label>
+                                                    <label class="form-check-label" for="factory-5">LG<c:if test="${not empty facets.factory['LG']}"> (${facets.factory['LG']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="factory-6"
                                                         value="ACER">
-                                                    <label class="form-check-label" for="factory-6">Acer</label>
+                                                    <label class="form-check-label" for="factory-6">Acer<c:if test="${not empty facets.factory['ACER']}"> (${facets.factory['ACER']})</c:if></label>
                                                 </div>
 
                                             </div>
@@ -106,30 +106,30 @@
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="target-1"
                                                         value="GAMING">
-                                                    <label class="form-check-label" for="target-1">Gaming</label>
+                                                    <label class="form-check-label" for="target-1">Gaming<c:if test="${not empty facets.target['GAMING']}"> (${facets.target['GAMING']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="target-2"
                                                         value="SINHVIEN-VANPHONG">
                                                     <label class="form-check-label" for="target-2">Sinh viên - văn
-                                                        phòng</label>
+                                                        phòng<c:if test="${not empty facets.target['SINHVIEN-VANPHONG']}"> (${facets.target['SINHVIEN-VANPHONG']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="target-3"
                                                         value="THIET-KE-DO-HOA">
                                                     <label class="form-check-label" for="target-3">Thiết kế đồ
-                                                        họa</label>
+                                                        họa<c:if test="${not empty facets.target['THIET-KE-DO-HOA']}"> (${facets.target['THIET-KE-DO-HOA']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="target-4"
                                                         value="MONG-NHE">
-                                                    <label class="form-check-label" for="target-4">Mỏng nhẹ</label>
+                                                    <label class="form-check-label" for="target-4">Mỏng nhẹ<c:if test="${not empty facets.target['MONG-NHE']}"> (${facets.target['MONG-NHE']})</c:if></label>
                                                 </div>
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="target-5"
                                                         value="DOANH-NHAN">
-                                                    <label class="form-check-label" for="target-5">Doanh nhân</label>
+                                                    <label class="form-check-label" for="target-5">Doanh nhân<c:if test="${not empty facets.target['DOANH-NHAN']}"> (${facets.target['DOANH-NHAN']})</c:if></label>
                                                 </div>
 
 
@@ -140,27 +140,27 @@
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="price-2"
                                                         value="duoi-10trieu">
-                                                    <label class="form-check-label" for="price-2">Dưới 10 triệu</label>
+                                                    <label class="form-check-label" for="price-2">Dưới 10 triệu<c:if test="${not empty facets.price['duoi-10trieu']}"> (${facets.price['duoi-10trieu']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="price-3"
                                                         value="10-15trieu">
                                                     <label class="form-check-label" for="price-3">Từ 10 - 15
-                                                        triệu</label>
+                                                        triệu<c:if test="${not empty facets.price['10-15trieu']}"> (${facets.price['10-15trieu']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="price-4"
                                                         value="15-20trieu">
                                                     <label class="form-check-label" for="price-4">Từ 15 - 20
-                                                        triệu</label>
+                                                        triệu<c:if test="${not empty facets.price['15-20trieu']}"> (${facets.price['15-20trieu']})</c:if></label>
                                                 </div>
 
                                                 <div class="form-check form-check-inline">
                                                     <input class="form-check-input" type="checkbox" id="price-5"
                                                         value="tren-20trieu">
-                                                    <label class="form-check-label" for="price-5">Trên 20 triệu</label>
+                                                    <label class="form-check-label" for="price-5">Trên 20 triệu<c:if test="${not empty facets.price['tren-20trieu']}"> (${facets.price['tren-20trieu']})</c:if></label>
                                                 </div>
                                             </div>
                                             <div class="col-12">
@@ -196,7 +196,7 @@
                                     </div>
                                     <div class="col-12 col-md-8 text-center">
                                         <div class="row g-4">
-                                            <c:if test="${totalPages == 0}">
+                                            <c:if test="${empty products}">
                                                 <div>Không tìm thấy sản phẩm</div>
                                             </c:if>
                                             <c:forEach var="product" items="${products}">
@@ -231,6 +231,8 @@
                                                                     method="post">
                                                                     <input type="hidden" name="${_csrf.parameterName}"
                                                                         value="${_csrf.token}" />
+                                                                    <input type="hidden" name="idempotencyKey"
+                                                                        value="${idempotencyKeys[product.id]}" />
 
                                                                     <button
                                                                         class="mx-auto btn border border-secondary rounded-pill px-3 text-primary"><i
@@ -244,33 +246,54 @@
                                                 </div>
                                             </c:forEach>
 
-                                            <div class="pagination d-flex justify-content-center mt-5">
-                                                <li class="page-item">
-                                                    <a class="${1 eq currentPage ? 'disabled page-link' : 'page-link'}"
-                                                        href="/products?page=${currentPage - 1}${queryString}"
-                                                        aria-label="Previous">
-                                                        <span aria-hidden="true">&laquo;</span>
-                                                    </a>
-                                                </li>
-                                                <c:if test="${totalPages > 0}">
-                                                    <c:forEach begin="0" end="${totalPages - 1}" varStatus="loop">
+                                            <c:choose>
+                                                <c:when test="${cursorMode}">
+                                                    <div class="pagination d-flex justify-content-center mt-5">
                                                         <li class="page-item">
-                                                            <a class="${(loop.index + 1) eq currentPage ? 'active page-link' : 'page-link'}"
-                                                                href="/products?page=${loop.index + 1}${queryString}">
-                                                                ${loop.index + 1}
+                                                            <a class="page-link"
+                                                                href="/products?cursor=first${queryString}">
+                                                                Trang đầu
+                                                            </a>
+                                                        </li>
+                                                        <li class="page-item">
+                                                            <a class="${empty nextCursor ? 'disabled page-link' : 'page-link'}"
+                                                                href="/products?cursor=${nextCursor}${queryString}"
+                                                                aria-label="Next">
+                                                                <span aria-hidden="true">&raquo;</span>
+                                                            </a>
+                                                        </li>
+                                                    </div>
+                                                </c:when>
+                                                <c:otherwise>
+                                                    <div class="pagination d-flex justify-content-center mt-5">
+                                                        <li class="page-item">
+                                                            <a class="${1 eq currentPage ? 'disabled page-link' : 'page-link'}"
+                                                                href="/products?page=${currentPage - 1}${queryString}"
+                                                                aria-label="Previous">
+                                                                <span aria-hidden="true">&laquo;</span>
+                                                            </a>
+                                                        </li>
+                                                        <c:if test="${totalPages > 0}">
+                                                            <c:forEach begin="0" end="${totalPages - 1}" varStatus="loop">
+                                                                <li class="page-item">
+                                                                    <a class="${(loop.index + 1) eq currentPage ? 'active page-link' : 'page-link'}"
+                                                                        href="/products?page=${loop.index + 1}${queryString}">
+                                                                        ${loop.index + 1}
+                                                                    </a>
+                                                                </li>
+                                                            </c:forEach>
+                                                        </c:if>
+                                                        <li class="page-item">
+                                                            <a class="${totalPages eq currentPage ? 'disabled page-link' : 'page-link'}"
+                                                                href="/products?page=${currentPage + 1}${queryString}"
+                                                                aria-label="Next">
+                                                                <span aria-hidden="true">&raquo;</span>
                                                             </a>
                                                         </li>
-                                                    </c:forEach>
-                                                </c:if>
-                                                <li class="page-item">
-                                                    <a class="${totalPages eq currentPage ? 'disabled page-link' : 'page-link'}"
-                                                        href="/products?page=${currentPage + 1}${queryString}"
-                                                        aria-label="Next">
-                                                        <span aria-hidden="true">&raquo;</span>
-                                                    </a>
-                                                </li>
 
-                                            </div>
+                                                    </div>
+                                                </c:otherwise>
+                                            </c:choose>
                                         </div>
                                     </div>
                                 </div>
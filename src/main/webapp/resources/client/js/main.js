@@ -286,6 +286,24 @@
         window.location.href = currentUrl.toString();
     });
 
+    //search suggestions
+    let suggestTimer = null;
+    $('#searchInput').on('input', function () {
+        const prefix = $(this).val();
+        clearTimeout(suggestTimer);
+        if (prefix.trim().length === 0) {
+            $('#searchSuggestions').empty();
+            return;
+        }
+        suggestTimer = setTimeout(function () {
+            $.getJSON('/products/suggest', { q: prefix }, function (suggestions) {
+                const list = $('#searchSuggestions');
+                list.empty();
+                suggestions.forEach(s => list.append($('<option>').attr('value', s.name)));
+            });
+        }, 150);
+    });
+
     //handle auto checkbox after page loading
     // Parse the URL parameters
     const params = new URLSearchParams(window.location.search);
@@ -0,0 +1,16 @@
+package vn.hoidanit.laptopshop;
+
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+// MySQL thật cho các test cần khóa dòng / batch; máy không có Docker thì bỏ qua thay vì báo lỗi
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlContainerTest {
+    // cùng tham số với spring.datasource.url: INSERT theo lô thành một câu lệnh nhiều dòng
+    @Container
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0")
+            .withUrlParam("rewriteBatchedStatements", "true");
+}
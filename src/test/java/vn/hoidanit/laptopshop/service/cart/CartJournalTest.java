@@ -0,0 +1,119 @@
+package vn.hoidanit.laptopshop.service.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CartJournalTest {
+    // header 16 byte + 4 record 40 byte
+    private static final int SIZE = 16 + 4 * 40;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysUncommittedRecordsAfterReopen() throws Exception {
+        Path path = this.dir.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            journal.append(1, 10, 2);
+            journal.append(1, 11, 1);
+            journal.commit(1);
+            journal.append(2, 10, 5);
+        }
+
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            List<long[]> records = replay(journal);
+            assertThat(records).containsExactly(new long[] { 2, 1, 11, 1 }, new long[] { 3, 2, 10, 5 });
+            assertThat(journal.lastSeq()).isEqualTo(3);
+            assertThat(journal.append(3, 12, 1)).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void committedRecordsAreNotReplayed() throws Exception {
+        Path path = this.dir.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            journal.append(1, 10, 2);
+            journal.append(1, 11, 1);
+            journal.commit(journal.lastSeq());
+        }
+
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            assertThat(replay(journal)).isEmpty();
+            assertThat(journal.pendingBytes()).isZero();
+        }
+    }
+
+    @Test
+    void wrapsAroundWhileRecordsKeepArriving() throws Exception {
+        Path path = this.dir.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            // luôn còn record chưa commit lúc commit, vẫn không bao giờ đầy
+            journal.append(1, 1, 1);
+            for (int i = 2; i <= 1000; i++) {
+                long seq = journal.append(1, i, 1);
+                assertThat(seq).isEqualTo(i);
+                journal.commit(seq - 1);
+            }
+        }
+
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            assertThat(replay(journal)).containsExactly(new long[] { 1000, 1, 1000, 1 });
+        }
+    }
+
+    @Test
+    void appendFailsOnlyWhenUncommittedRecordsFillTheRing() throws Exception {
+        try (CartJournal journal = new CartJournal(this.dir.resolve("cart.journal"), SIZE, false)) {
+            for (int i = 1; i <= 4; i++) {
+                assertThat(journal.append(1, i, 1)).isEqualTo(i);
+            }
+            assertThat(journal.append(1, 5, 1)).isEqualTo(-1);
+
+            journal.commit(2);
+            assertThat(journal.append(1, 5, 1)).isEqualTo(5);
+            assertThat(journal.append(1, 6, 1)).isEqualTo(6);
+            assertThat(journal.append(1, 7, 1)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void skipsRecordsAlreadyAppliedByTheDatabase() throws Exception {
+        Path path = this.dir.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            journal.append(1, 10, 2);
+            journal.append(1, 11, 1);
+            journal.append(1, 12, 1);
+        }
+
+        // crash sau khi DB đã ghi tới seq 2 nhưng trước journal.commit
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            journal.commit(2);
+            assertThat(replay(journal)).containsExactly(new long[] { 3, 1, 12, 1 });
+        }
+    }
+
+    @Test
+    void freshJournalContinuesAfterDatabaseSeq() throws Exception {
+        Path path = this.dir.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            journal.commit(500);
+            assertThat(journal.append(1, 10, 1)).isEqualTo(501);
+        }
+
+        try (CartJournal journal = new CartJournal(path, SIZE, false)) {
+            assertThat(replay(journal)).containsExactly(new long[] { 501, 1, 10, 1 });
+        }
+    }
+
+    private static List<long[]> replay(CartJournal journal) {
+        List<long[]> records = new ArrayList<>();
+        journal.replay((seq, userId, productId, quantity) -> records.add(new long[] { seq, userId, productId, quantity }));
+        return records;
+    }
+}
@@ -0,0 +1,138 @@
+package vn.hoidanit.laptopshop.service.order;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import vn.hoidanit.laptopshop.MySqlContainerTest;
+import vn.hoidanit.laptopshop.domain.OrderIntake;
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.domain.User;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+import vn.hoidanit.laptopshop.repository.UserRepository;
+import vn.hoidanit.laptopshop.service.ProductService;
+
+// số câu lệnh JDBC của một lần đặt hàng (ghi intake + worker tạo đơn) không tăng theo số dòng giỏ hàng
+@SpringBootTest(properties = {
+        "order.intake.async=false",
+        "cart.write-behind.enabled=false",
+        "flash-sale.products=" })
+class OrderPlacementStatementCountTest extends MySqlContainerTest {
+    // submit: khóa giỏ, INSERT intake, DELETE dòng giỏ (lô), đếm lại sum
+    // process: khóa intake, trừ tồn kho (lô), INSERT orders, INSERT order_detail (lô),
+    // INSERT order_outbox, UPDATE intake
+    private static final long MAX_STATEMENTS = 10;
+
+    @TestConfiguration
+    static class CountingDataSourceConfiguration {
+        // đếm mọi câu lệnh (JPA lẫn JdbcTemplate) theo thread, luồng nền không tính vào
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                        return ProxyDataSourceBuilder.create(dataSource).name(beanName).countQuery().build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private OrderIntakeService orderIntakeService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void thirtyLineCartTakesAsManyStatementsAsOneLine() {
+        // lần đầu còn nạp metadata và cấp khối id order_detail_seq: không đo
+        this.placeOrder(3);
+
+        long single = this.placeOrder(1);
+        long thirty = this.placeOrder(30);
+
+        assertThat(thirty).isEqualTo(single);
+        assertThat(thirty).isLessThanOrEqualTo(MAX_STATEMENTS);
+    }
+
+    @Test
+    void secondCheckoutFindsEmptyCart() {
+        long userId = this.fillCart(2);
+        assertThat(this.orderIntakeService.submit(userId, "Test User", "Ha Noi", "0123456789")).isNotNull();
+        assertThat(this.orderIntakeService.submit(userId, "Test User", "Ha Noi", "0123456789")).isNull();
+        assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders o JOIN order_intake i "
+                + "ON i.id = o.intake_id WHERE i.user_id = ?", Long.class, userId)).isEqualTo(1);
+    }
+
+    // số câu lệnh của submit với giỏ hàng lines dòng
+    private long placeOrder(int lines) {
+        long userId = this.fillCart(lines);
+
+        QueryCountHolder.clear();
+        OrderIntake intake = this.orderIntakeService.submit(userId, "Test User", "Ha Noi", "0123456789");
+        long statements = QueryCountHolder.getGrandTotal().getTotal();
+
+        assertThat(intake).isNotNull();
+        assertThat(this.jdbcTemplate.queryForObject("SELECT status FROM order_intake WHERE id = ?", String.class,
+                intake.getId())).isEqualTo(OrderIntake.DONE);
+        assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_detail od JOIN orders o "
+                + "ON o.id = od.order_id WHERE o.intake_id = ?", Long.class, intake.getId())).isEqualTo(lines);
+        assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_detail cd JOIN carts c "
+                + "ON c.id = cd.cart_id WHERE c.user_id = ?", Long.class, userId)).isZero();
+        return statements;
+    }
+
+    private long fillCart(int lines) {
+        User user = new User();
+        user.setEmail("order-" + UUID.randomUUID() + "@test.local");
+        user.setPassword("123456");
+        user.setFullName("Test User");
+        user = this.userRepository.save(user);
+
+        List<Product> products = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Product product = new Product();
+            product.setName("Laptop " + i);
+            product.setPrice(1000 + i);
+            product.setDetailDesc("detail");
+            product.setShortDesc("short");
+            product.setQuantity(100);
+            product.setFactory("DELL");
+            product.setTarget("GAMING");
+            products.add(product);
+        }
+        MockHttpSession session = new MockHttpSession();
+        for (Product product : this.productRepository.saveAll(products)) {
+            this.productService.handleAddProductToCart(user.getId(), product.getId(), session, 2);
+        }
+        return user.getId();
+    }
+}
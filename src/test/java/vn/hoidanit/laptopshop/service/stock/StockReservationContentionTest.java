@@ -0,0 +1,112 @@
+package vn.hoidanit.laptopshop.service.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import vn.hoidanit.laptopshop.MySqlContainerTest;
+import vn.hoidanit.laptopshop.domain.Product;
+import vn.hoidanit.laptopshop.repository.ProductRepository;
+
+// nhiều luồng cùng giữ hàng một sản phẩm "nóng": không bán quá tồn kho, throughput không dưới mức sàn
+@SpringBootTest(properties = { "flash-sale.products=" })
+class StockReservationContentionTest extends MySqlContainerTest {
+    private static final Logger log = LoggerFactory.getLogger(StockReservationContentionTest.class);
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 125;
+    private static final long STOCK = 1000;
+    // mức sàn số lần giữ hàng thành công mỗi giây, máy CI chậm có thể hạ qua -Dstock.contention.min-throughput
+    private static final long MIN_RESERVATIONS_PER_SECOND = Long.getLong("stock.contention.min-throughput", 100);
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void hotProductNeverOversellsUnderContention() throws Exception {
+        Product product = new Product();
+        product.setName("Hot laptop");
+        product.setPrice(1000);
+        product.setDetailDesc("detail");
+        product.setShortDesc("short");
+        product.setQuantity(STOCK);
+        long productId = this.productRepository.save(product).getId();
+
+        // mỗi lần giữ hàng là một transaction riêng như một đơn hàng một dòng
+        TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicLong reservedNanos = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    long begin = System.nanoTime();
+                    try {
+                        transactionTemplate.executeWithoutResult(
+                                status -> this.stockReservationService.reserve(Map.of(productId, 1L)));
+                        reservedNanos.addAndGet(System.nanoTime() - begin);
+                        reserved.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        double seconds = elapsedNanos / 1e9;
+        log.info("hot product contention: {} threads, {} attempts in {} ms -> {} attempts/s, "
+                + "{} reserved ({} reservations/s, mean {} ms incl. row-lock wait), {} rejected",
+                THREADS, attempts, Math.round(seconds * 1000), Math.round(attempts / seconds), reserved.get(),
+                Math.round(reserved.get() / seconds),
+                String.format("%.2f", reservedNanos.get() / 1e6 / Math.max(1, reserved.get())), rejected.get());
+
+        assertThat(reserved.get()).isEqualTo(STOCK);
+        assertThat(Math.round(reserved.get() / seconds)).isGreaterThanOrEqualTo(MIN_RESERVATIONS_PER_SECOND);
+        assertThat(rejected.get()).isEqualTo(attempts - STOCK);
+        Map<String, Object> row = this.jdbcTemplate.queryForMap("SELECT quantity, sold FROM products WHERE id = ?",
+                productId);
+        assertThat(((Number) row.get("quantity")).longValue()).isZero();
+        assertThat(((Number) row.get("sold")).longValue()).isEqualTo(STOCK);
+    }
+}